@@ -0,0 +1,36 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import compiler.CompilerFacade;
+
+// The whole front end as CompilerFacade runs it: streaming lex and parse
+// with the semantic checks, then flow analysis
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+
+    private final CompilerFacade compiler = new CompilerFacade();
+
+    @Benchmark
+    public void compile(Workload workload, Blackhole blackhole) {
+        for (byte[] source : workload.sources) {
+            blackhole.consume(compiler.compile(source));
+        }
+    }
+}
\ No newline at end of file
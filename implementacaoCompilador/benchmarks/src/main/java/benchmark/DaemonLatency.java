@@ -0,0 +1,91 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import compiler.Client;
+import compiler.CompilerFacade;
+import compiler.Server;
+
+// Latency of one compile, p50 and p99, three ways: a fresh JVM per file
+// running Main as java -jar does, a client JVM per file against the
+// daemon, and a request on a connection already open. JMH measures
+// neither process start nor a socket, hence a main of its own. Arguments:
+// [file] [runs], by default ../testes/teste_1.txt and 100 runs
+//   java -cp target/benchmarks.jar benchmark.DaemonLatency
+public final class DaemonLatency {
+
+    private DaemonLatency() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Path.of(args.length > 0 ? args[0] : "../testes/teste_1.txt").toAbsolutePath().normalize();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        Path socket = Files.createTempDirectory("compilador-latencia").resolve("compilador.sock");
+        Server server = new Server(new CompilerFacade());
+        server.warmUp(2000);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                System.err.println("Erro: " + e.getMessage());
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+        while (!Files.exists(socket)) {
+            Thread.sleep(10);
+        }
+
+        long[] fresh = new long[runs];
+        long[] client = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            fresh[i] = process(java, "-cp", classpath, "Main", file.toString());
+            client[i] = process(java, "-cp", classpath, "Main", "--client", "-a", socket.toString(), file.toString());
+        }
+
+        byte[] path = file.toString().getBytes(StandardCharsets.UTF_8);
+        long[] open = new long[runs * 100];
+        try (Client connection = new Client(socket.toString())) {
+            for (int i = 0; i < open.length; i++) {
+                long start = System.nanoTime();
+                List<String> messages = connection.compile(Server.PATH, path);
+                open[i] = System.nanoTime() - start;
+                if (i == 0) {
+                    System.out.println(file + ": " + messages.size() + " mensagens");
+                }
+            }
+        }
+
+        report("JVM nova por arquivo (Main arquivo)", fresh, 1_000_000, "ms");
+        report("JVM cliente por arquivo", client, 1_000_000, "ms");
+        report("requisição em conexão aberta", open, 1_000, "us");
+    }
+
+    // Wall time of one process, in ns; its output is thrown away
+    private static long process(String... command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        process.waitFor();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long[] times, long unit, String unitName) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-36s p50 %6d %s, p99 %6d %s (%d execuções)%n", name,
+            sorted[sorted.length / 2] / unit, unitName,
+            sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / unit, unitName, sorted.length);
+    }
+}
\ No newline at end of file
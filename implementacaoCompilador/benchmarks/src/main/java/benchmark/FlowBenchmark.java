@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import diagnostic.DiagnosticList;
+import lexical.ArraySource;
+import lexical.LexicalAnalysis;
+import semantic.DataflowAnalysis;
+import syntatic.SyntaticAnalysis;
+
+// Definite assignment and liveness over trees parsed beforehand; programs
+// with errors never get this far, so they are left out
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlowBenchmark {
+
+    private final List<SyntaticAnalysis> parsed = new ArrayList<>();
+
+    @Setup
+    public void parse(Workload workload) {
+        for (byte[] source : workload.sources) {
+            try (LexicalAnalysis lex = new LexicalAnalysis(new ArraySource(source))) {
+                SyntaticAnalysis syntatic = new SyntaticAnalysis(lex, new DiagnosticList());
+                syntatic.start();
+                if (!syntatic.hasErrors()) {
+                    parsed.add(syntatic);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void flow(Blackhole blackhole) {
+        for (SyntaticAnalysis syntatic : parsed) {
+            DiagnosticList diagnostics = new DiagnosticList();
+            new DataflowAnalysis(syntatic.getAst(), syntatic.getTokens(), diagnostics).run();
+            blackhole.consume(diagnostics);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import compiler.CompileResult;
+import compiler.CompilerFacade;
+import vm.ClassGenerator;
+import vm.CompiledProgram;
+import vm.Io;
+import vm.IrBuilder;
+import vm.StreamIo;
+
+// A program that reads quantidade numbers and writes each back, compiled to
+// a class so that the time goes to I/O. The input is in memory and the
+// output is thrown away. io is StreamIo (buffer) or a line at a time
+// through BufferedReader, StringTokenizer and PrintStream.println (linhas),
+// as StreamIo used to work
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IoBenchmark {
+
+    @Param({ "10000000" })
+    public int quantidade;
+
+    @Param({ "integer", "real" })
+    public String tipo;
+
+    @Param({ "buffer", "linhas" })
+    public String io;
+
+    private byte[] input;
+    private CompiledProgram program;
+
+    @Setup
+    public void prepare() {
+        String source = "app eco\nvar\n integer cont;\n " + tipo + " x\ninit\n read(cont);\n repeat\n"
+            + "  read(x);\n  write(x);\n  cont := cont - 1\n until (cont = 0)\nreturn";
+        CompileResult result = new CompilerFacade().compile(source);
+        if (!result.success()) {
+            throw new IllegalStateException(result.getMessages().toString());
+        }
+        program = CompiledProgram.define(new ClassGenerator(new IrBuilder(result.getAst(), result.getTokens()).build()).generate());
+
+        // Numbers of every length, a few per line
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(quantidade * 12);
+        text.append(quantidade).append('\n');
+        for (int i = 0; i < quantidade; i++) {
+            if (tipo.equals("real")) {
+                text.append(random.nextInt(2_000_000) - 1_000_000).append('.').append(random.nextInt(1000));
+            } else {
+                text.append(random.nextLong() >> random.nextInt(64));
+            }
+            text.append(i % 8 == 7 ? '\n' : ' ');
+        }
+        input = text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public void run() {
+        InputStream in = new ByteArrayInputStream(input);
+        OutputStream out = OutputStream.nullOutputStream();
+        program.run(io.equals("buffer") ? new StreamIo(in, out) : new LineIo(in, new PrintStream(out)));
+    }
+
+    private static final class LineIo implements Io {
+        private final BufferedReader in;
+        private final PrintStream out;
+        private StringTokenizer line = new StringTokenizer("");
+
+        LineIo(InputStream in, PrintStream out) {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            this.out = out;
+        }
+
+        private String next() {
+            try {
+                while (!line.hasMoreTokens()) {
+                    line = new StringTokenizer(in.readLine());
+                }
+                return line.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long readInt() {
+            return Long.parseLong(next());
+        }
+
+        @Override
+        public double readReal() {
+            return Double.parseDouble(next());
+        }
+
+        @Override
+        public void writeInt(long value) {
+            out.println(value);
+        }
+
+        @Override
+        public void writeReal(double value) {
+            out.println(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) {
+            out.println(value ? "verdadeiro" : "falso");
+        }
+
+        @Override
+        public void writeText(String text) {
+            out.println(text);
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+        }
+    }
+}
\ No newline at end of file
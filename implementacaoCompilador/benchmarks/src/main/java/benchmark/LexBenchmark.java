@@ -0,0 +1,34 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import lexical.ArraySource;
+import lexical.LexicalAnalysis;
+import lexical.TokenBuffer;
+
+// Lexing alone: every program of the workload into a TokenBuffer
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexBenchmark {
+
+    @Benchmark
+    public void lex(Workload workload, Blackhole blackhole) {
+        for (byte[] source : workload.sources) {
+            try (LexicalAnalysis lex = new LexicalAnalysis(new ArraySource(source))) {
+                blackhole.consume(TokenBuffer.lexAll(lex));
+            }
+        }
+    }
+}
\ No newline at end of file
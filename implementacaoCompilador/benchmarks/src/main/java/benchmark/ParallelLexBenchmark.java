@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lexical.ArraySource;
+import lexical.LexicalAnalysis;
+import lexical.ParallelLexer;
+import lexical.TokenBuffer;
+
+// ParallelLexer on a pool of threads threads against the plain lexer
+// (sequential, the same for every threads), on one generated program of
+// about megabytes MB. The scaling from 1 to N threads needs as many free
+// cores, e.g.
+//   java -jar target/benchmarks.jar ParallelLex -p threads=1,2,4,8
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelLexBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    @Param({ "16" })
+    public int megabytes;
+
+    private byte[] source;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void prepare() {
+        // ProgramGenerator writes about 45 bytes per statement
+        source = new ProgramGenerator(42, megabytes * 23_000, 6, 4, 200).generate();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.shutdown();
+    }
+
+    // As ParallelLexer.lex(Source) chunks the source for the common pool
+    @Benchmark
+    public TokenBuffer parallel() {
+        return ParallelLexer.lex(new ArraySource(source), pool,
+            Math.min(threads * 4, source.length / ParallelLexer.MIN_CHUNK_SIZE));
+    }
+
+    @Benchmark
+    public TokenBuffer sequential() {
+        try (LexicalAnalysis lex = new LexicalAnalysis(new ArraySource(source))) {
+            return TokenBuffer.lexAll(lex);
+        }
+    }
+}
\ No newline at end of file
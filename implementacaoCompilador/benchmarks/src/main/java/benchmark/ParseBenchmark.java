@@ -0,0 +1,53 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import diagnostic.DiagnosticList;
+import lexical.ArraySource;
+import lexical.LexicalAnalysis;
+import lexical.TokenBuffer;
+import syntatic.SyntaticAnalysis;
+
+// Parsing over tokens lexed beforehand. The semantic checks run inside the
+// parser, so they are part of this and cannot be measured apart
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    private TokenBuffer[] tokens;
+
+    @Setup
+    public void lex(Workload workload) {
+        tokens = new TokenBuffer[workload.sources.length];
+        for (int i = 0; i < tokens.length; i++) {
+            try (LexicalAnalysis lex = new LexicalAnalysis(new ArraySource(workload.sources[i]))) {
+                tokens[i] = TokenBuffer.lexAll(lex);
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (TokenBuffer buffer : tokens) {
+            SyntaticAnalysis syntatic = new SyntaticAnalysis(buffer, new DiagnosticList());
+            syntatic.start();
+            blackhole.consume(syntatic.getAst());
+        }
+    }
+}
\ No newline at end of file
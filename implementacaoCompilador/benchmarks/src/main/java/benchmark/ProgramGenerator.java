@@ -0,0 +1,222 @@
+package benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Emits random programs that compile without errors, one method per rule of
+// the grammar (see syntatic.Grammar). Besides the seed it is driven by:
+//   statements  how many statements in all, nested ones included
+//   depth       how deep if and repeat may nest
+//   width       binary operators per expression
+//   variables   how many of each type are declared
+//
+// Every variable is read first and written last, so definite assignment
+// holds and nothing is unused; integer variables only get integer
+// expressions, and "/" only appears in real ones. Conditions are parenthesized
+// comparisons joined by && and ||, as those bind tighter than comparisons
+public final class ProgramGenerator {
+
+    private static final String[] INT_OPS = { " + ", " - ", " * " };
+    private static final String[] REAL_OPS = { " + ", " - ", " * ", " / " };
+    private static final String[] RELOPS = { " = ", " != ", " < ", " > ", " <= ", " >= " };
+
+    private final Random random;
+    private final int statements;
+    private final int depth;
+    private final int width;
+    private final int variables;
+
+    private final StringBuilder out = new StringBuilder();
+    private int remaining;
+
+    public ProgramGenerator(long seed, int statements, int depth, int width, int variables) {
+        this.random = new Random(seed);
+        this.statements = statements;
+        this.depth = depth;
+        this.width = width;
+        this.variables = Math.max(1, variables);
+    }
+
+    public byte[] generate() {
+        out.setLength(0);
+        remaining = statements;
+        program();
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // program ::= app identifier body
+    private void program() {
+        out.append("app gerado\n");
+        body();
+    }
+
+    // body ::= var decl-list init stmt-list return
+    private void body() {
+        out.append("var\n");
+        declList();
+        out.append("\ninit\n");
+        for (int i = 0; i < variables; i++) {
+            out.append(" read(i").append(i).append(");\n read(r").append(i).append(");\n");
+        }
+        stmtList(0, " ");
+        for (int i = 0; i < variables; i++) {
+            out.append(";\n write(i").append(i).append(");\n write(r").append(i).append(')');
+        }
+        out.append("\nreturn\n");
+    }
+
+    // decl-list ::= decl {";" decl}, eight names per decl
+    private void declList() {
+        for (int i = 0; i < variables; i += 8) {
+            decl("integer", "i", i);
+            out.append(";\n");
+        }
+        for (int i = 0; i < variables; i += 8) {
+            if (i > 0) {
+                out.append(";\n");
+            }
+            decl("real", "r", i);
+        }
+    }
+
+    // decl ::= type ident-list
+    private void decl(String type, String prefix, int first) {
+        out.append(' ').append(type).append(' ');
+        for (int i = first; i < Math.min(variables, first + 8); i++) {
+            if (i > first) {
+                out.append(", ");
+            }
+            out.append(prefix).append(i);
+        }
+    }
+
+    // stmt-list ::= stmt {";" stmt}; a nested list takes a share of what is
+    // left, at least one statement
+    private void stmtList(int level, String indent) {
+        int count = level == 0 ? Integer.MAX_VALUE : 1 + random.nextInt(Math.max(1, Math.min(remaining, 8)));
+        boolean first = true;
+        while (remaining > 0 && count-- > 0 || first) {
+            if (!first) {
+                out.append(";\n");
+            }
+            first = false;
+            stmt(level, indent);
+        }
+    }
+
+    // stmt ::= assign-stmt | if-stmt | repeat-stmt | read-stmt | write-stmt
+    private void stmt(int level, String indent) {
+        remaining--;
+        out.append(indent);
+        int choice = random.nextInt(10);
+        if (level < depth && remaining > 0 && choice < 3) {
+            if (choice < 2) {
+                ifStmt(level, indent);
+            } else {
+                repeatStmt(level, indent);
+            }
+        } else if (choice < 7) {
+            assignStmt();
+        } else if (choice < 8) {
+            out.append("read(").append(variable()).append(')');
+        } else if (choice < 9) {
+            out.append("write(");
+            simpleExpr(random.nextBoolean(), width);
+            out.append(')');
+        } else {
+            out.append("write({texto ").append(remaining).append("})");
+        }
+    }
+
+    // assign-stmt ::= identifier ":=" simple-expr
+    private void assignStmt() {
+        boolean real = random.nextBoolean();
+        out.append(real ? 'r' : 'i').append(random.nextInt(variables)).append(" := ");
+        simpleExpr(real, width);
+    }
+
+    // if-stmt ::= if condition then stmt-list [else stmt-list] end
+    private void ifStmt(int level, String indent) {
+        out.append("if ");
+        condition(width);
+        out.append(" then\n");
+        stmtList(level + 1, indent + " ");
+        if (remaining > 0 && random.nextBoolean()) {
+            out.append('\n').append(indent).append("else\n");
+            stmtList(level + 1, indent + " ");
+        }
+        out.append('\n').append(indent).append("end");
+    }
+
+    // repeat-stmt ::= repeat stmt-list until condition
+    private void repeatStmt(int level, String indent) {
+        out.append("repeat\n");
+        stmtList(level + 1, indent + " ");
+        out.append('\n').append(indent).append("until ");
+        condition(width);
+    }
+
+    // condition ::= expression: a comparison, or parenthesized ones joined by
+    // && and ||, with ops operators spread over them
+    private void condition(int ops) {
+        int joins = Math.min(ops / 4, 3);
+        int each = Math.max(0, (ops - joins) / (joins + 1) - 1);
+        for (int i = 0; i <= joins; i++) {
+            if (i > 0) {
+                out.append(random.nextBoolean() ? " && " : " || ");
+            }
+            if (joins > 0) {
+                out.append(random.nextInt(4) == 0 ? "!(" : "(");
+            }
+            simpleExpr(random.nextBoolean(), each / 2);
+            out.append(RELOPS[random.nextInt(RELOPS.length)]);
+            simpleExpr(random.nextBoolean(), each - each / 2);
+            if (joins > 0) {
+                out.append(')');
+            }
+        }
+    }
+
+    // simple-expr, term and factor with ops binary operators, split at a
+    // random point and parenthesized now and then
+    private void simpleExpr(boolean real, int ops) {
+        if (ops == 0) {
+            factor(real);
+            return;
+        }
+        int left = random.nextInt(ops);
+        boolean parens = random.nextInt(4) == 0;
+        if (parens) {
+            out.append('(');
+        }
+        simpleExpr(real, left);
+        String[] operators = real ? REAL_OPS : INT_OPS;
+        out.append(operators[random.nextInt(operators.length)]);
+        simpleExpr(real, ops - 1 - left);
+        if (parens) {
+            out.append(')');
+        }
+    }
+
+    // factor ::= ["-"] (identifier | constant); integers only in integer
+    // expressions, either in real ones
+    private void factor(boolean real) {
+        if (random.nextInt(8) == 0) {
+            out.append('-');
+        }
+        int choice = random.nextInt(4);
+        if (choice == 0) {
+            if (real && random.nextBoolean()) {
+                out.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+            } else {
+                out.append(random.nextInt(1000));
+            }
+        } else {
+            out.append(real && random.nextBoolean() ? 'r' : 'i').append(random.nextInt(variables));
+        }
+    }
+
+    private String variable() {
+        return (random.nextBoolean() ? "r" : "i") + random.nextInt(variables);
+    }
+}
\ No newline at end of file
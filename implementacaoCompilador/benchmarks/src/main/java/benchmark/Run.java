@@ -0,0 +1,47 @@
+package benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// JMH's command line with the GC profiler always on, so every result comes
+// with gc.alloc.rate.norm, the bytes allocated per op. Run from the
+// benchmarks directory, or pass -jvmArgs -Dtestes=path, e.g.
+//   java -jar target/benchmarks.jar Lex -p workload=testes,large
+// -h, -l, -lp, -lprof and -lrf do what they do in JMH's own main
+public final class Run {
+
+    private Run() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldListProfilers()) {
+            options.listProfilers();
+            return;
+        }
+        if (options.shouldListResultFormats()) {
+            options.listResultFormats();
+            return;
+        }
+        Runner runner = new Runner(options);
+        if (options.shouldList()) {
+            runner.list();
+            return;
+        }
+        if (options.shouldListWithParams()) {
+            runner.listWithParams(options);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import compiler.Client;
+import compiler.CompilerFacade;
+import compiler.Server;
+
+// Regression checks for the compile daemon, with no test framework to run
+// them: a Server on a socket in a new temporary directory, which must be
+// owner only, and a Client sending it requests that once dropped the
+// connection. Exits with 1 on the first failure.
+//   java -cp target/benchmarks.jar benchmark.ServerCheck
+public final class ServerCheck {
+
+    private ServerCheck() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("compilador-check");
+        Path socket = dir.resolve("compilador.sock");
+        Server server = new Server(new CompilerFacade());
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                System.err.println("Erro: " + e.getMessage());
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+        while (!Files.exists(socket)) {
+            Thread.sleep(10);
+        }
+        // Only its owner may connect, from just after bind
+        String permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(socket));
+        for (int i = 0; i < 100 && !permissions.equals("rw-------"); i++) {
+            Thread.sleep(10);
+            permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(socket));
+        }
+        check(permissions.equals("rw-------"), "permissões do socket: " + permissions);
+
+        String ok = "app ok\nvar integer a\ninit\n read(a); write(a)\nreturn\n";
+        try (Client client = new Client(socket.toString())) {
+            // A diagnostic quoting a token longer than writeUTF takes
+            String literal = "{" + "x".repeat(70_000) + "}";
+            List<String> messages = client.compile(Server.SOURCE, bytes("app longo\ninit\n " + literal + "\nreturn\n"));
+            check(messages.size() == 1 && client.failed(), "token longo: " + messages.size() + " mensagens");
+            check(messages.get(0).length() < 65_536, "token longo: mensagem de " + messages.get(0).length());
+
+            // A path Path.of rejects
+            messages = client.compile(Server.PATH, bytes("a\0b"));
+            check(client.failed() && messages.get(0).startsWith(" Erro: "), "caminho inválido: " + messages);
+
+            // The connection still answers
+            messages = client.compile(Server.SOURCE, bytes(ok));
+            check(messages.isEmpty() && !client.failed(), "depois dos erros: " + messages);
+        }
+        System.out.println("ok");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            System.err.println("Falhou: " + failure);
+            System.exit(1);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import compiler.CompileResult;
+import compiler.CompilerFacade;
+import vm.ClassGenerator;
+import vm.CodeGenerator;
+import vm.CompiledProgram;
+import vm.Io;
+import vm.Ir;
+import vm.IrBuilder;
+import vm.Optimizer;
+import vm.Program;
+import vm.VirtualMachine;
+
+// Loop-heavy programs, compiled beforehand for the VM (vm) or to a class of
+// their own (jvm), at Optimizer level otimizacao; one op is a whole run of
+// iteracoes loop iterations:
+//   contagem     testes/teste_3.txt with the count raised, a read and two
+//                writes per iteration
+//   aninhado     testes/teste_8.txt's nested loops, integer and real
+//                arithmetic only
+//   condicional  an if with && and || in the loop
+//   invariante   nested loops whose inner one recomputes values only the
+//                outer one changes, and multiplies by its counter; level 3
+//                moves the first out and turns the second into additions
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VmBenchmark {
+
+    @Param({ "contagem", "aninhado", "condicional", "invariante" })
+    public String programa;
+
+    @Param({ "1000000" })
+    public int iteracoes;
+
+    @Param({ "vm", "jvm" })
+    public String backend;
+
+    @Param({ "0", "2", "3" })
+    public int otimizacao;
+
+    private Program program;
+    private CompiledProgram compiled;
+
+    @Setup
+    public void compile() {
+        String source;
+        switch (programa) {
+            case "contagem":
+                source = "app pessoa\nvar\n integer cont;\n real altura, soma, media\ninit\n"
+                    + " cont := " + iteracoes + ";\n soma := 0;\n repeat\n"
+                    + "  write({Altura: });\n  read(altura);\n  soma := soma + altura;\n  cont := cont - 1\n"
+                    + " until (cont = 0);\n media := soma / " + iteracoes + ";\n"
+                    + " write({Media: });\n write(media)\nreturn";
+                break;
+            case "aninhado":
+                source = "app aninhado\nvar\n integer i, n, total;\n real soma\ninit\n"
+                    + " soma := 0;\n total := 0;\n n := " + Math.max(1, iteracoes / 1000) + ";\n repeat\n"
+                    + "  i := 1000;\n  repeat\n   soma := soma + i * 0.5;\n   total := total + i * n;\n"
+                    + "   i := i - 1\n  until (i = 0);\n  n := n - 1\n until (n = 0);\n"
+                    + " write(soma);\n write(total)\nreturn";
+                break;
+            case "condicional":
+                source = "app condicional\nvar\n integer i, k, dentro, fora\ninit\n"
+                    + " i := " + iteracoes + ";\n k := 0;\n dentro := 0;\n fora := 0;\n repeat\n"
+                    + "  k := k + 3;\n  if ((k > 100) && (i != 7)) || (i < 3) then\n"
+                    + "   k := k - 100;\n   dentro := dentro + 1\n  else\n   fora := fora + 1\n  end;\n"
+                    + "  i := i - 1\n until (i = 0);\n write(dentro);\n write(fora)\nreturn";
+                break;
+            case "invariante":
+                source = "app invariante\nvar\n integer i, n, a, b, total;\n real soma, fator\ninit\n"
+                    + " read(a);\n read(b);\n fator := 1.5;\n soma := 0;\n total := 0;\n n := "
+                    + Math.max(1, iteracoes / 1000) + ";\n repeat\n  i := 1000;\n  repeat\n"
+                    + "   total := total + i * (a + b) + n * a;\n   soma := soma + fator * (a - b) + i * 3;\n"
+                    + "   i := i - 1\n  until (i = 0);\n  n := n - 1\n until (n = 0);\n"
+                    + " write(total);\n write(soma)\nreturn";
+                break;
+            default:
+                throw new IllegalArgumentException("Programa desconhecido: " + programa);
+        }
+        CompileResult result = new CompilerFacade().compile(source);
+        if (!result.success()) {
+            throw new IllegalStateException(programa + ": " + result.getMessages());
+        }
+        Ir ir = new IrBuilder(result.getAst(), result.getTokens()).build();
+        new Optimizer(otimizacao).run(ir);
+        if (backend.equals("jvm")) {
+            compiled = CompiledProgram.define(new ClassGenerator(ir).generate());
+        } else {
+            program = new CodeGenerator(ir).generate();
+        }
+    }
+
+    @Benchmark
+    public void run(Blackhole blackhole) {
+        if (compiled != null) {
+            compiled.run(new SinkIo(blackhole));
+        } else {
+            VirtualMachine.run(program, new SinkIo(blackhole));
+        }
+    }
+
+    // Reads the same number every time and hands writes to the blackhole
+    private static final class SinkIo implements Io {
+        private final Blackhole blackhole;
+
+        SinkIo(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public long readInt() {
+            return 1;
+        }
+
+        @Override
+        public double readReal() {
+            return 1.75;
+        }
+
+        @Override
+        public void writeInt(long value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeReal(double value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeText(String text) {
+            blackhole.consume(text);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The programs one benchmark op goes through. "testes" is every file in
+// the repository's testes directory (-Dtestes=path to use another); the
+// rest are generated, always from the same seed
+@State(Scope.Benchmark)
+public class Workload {
+
+    @Param({ "testes", "small", "large", "deep", "wide" })
+    public String workload;
+
+    public byte[][] sources;
+    public long bytes;
+
+    @Setup
+    public void load() {
+        switch (workload) {
+            case "testes":
+                sources = testes();
+                break;
+            case "small":
+                sources = generate(50, 3, 3, 4);
+                break;
+            case "large":
+                sources = generate(20_000, 6, 4, 200);
+                break;
+            case "deep":
+                sources = generate(2_000, 40, 2, 8);
+                break;
+            case "wide":
+                sources = generate(2_000, 2, 32, 16);
+                break;
+            default:
+                throw new IllegalArgumentException("Carga desconhecida: " + workload);
+        }
+        for (byte[] source : sources) {
+            bytes += source.length;
+        }
+    }
+
+    private static byte[][] generate(int statements, int depth, int width, int variables) {
+        return new byte[][] { new ProgramGenerator(42, statements, depth, width, variables).generate() };
+    }
+
+    private static byte[][] testes() {
+        Path dir = Path.of(System.getProperty("testes", "../testes"));
+        List<byte[]> sources = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".txt")).sorted()::iterator) {
+                sources.add(Files.readAllBytes(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalStateException("Nenhum programa em " + dir.toAbsolutePath());
+        }
+        return sources.toArray(new byte[0][]);
+    }
+}
\ No newline at end of file
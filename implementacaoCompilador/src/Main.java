@@ -1,42 +1,51 @@
-import lexical.*;
-import syntatic.SyntaticAnalysis;
+import compiler.Batch;
+import compiler.Client;
+import compiler.CompileResult;
+import compiler.CompilerFacade;
+import compiler.Runner;
+import compiler.Server;
 
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
+        // --server runs the compile daemon and --client talks to it, --run
+        // compiles a program and runs it; other arguments are compiled in
+        // parallel (see Batch)
+        if (args.length > 0) {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "--server":
+                    System.exit(Server.main(rest));
+                    break;
+                case "--client":
+                    System.exit(Client.main(rest));
+                    break;
+                case "--run":
+                    System.exit(Runner.main(rest));
+                    break;
+                default:
+                    System.exit(Batch.main(args));
+                    break;
+            }
+        }
+
         Scanner scanner = new Scanner(System.in);
-        StringBuilder output = new StringBuilder();
-        boolean error = false;
-        
         System.out.print("Digite o nome do arquivo: ");
         String fileName = scanner.next();
-        
-        try (LexicalAnalysis lexical = new LexicalAnalysis("testes/" + fileName)) {
-            SyntaticAnalysis syntatic = new SyntaticAnalysis(lexical);
-            syntatic.start();
-            System.out.println("Análise semântica realizada com sucesso!");   
-
-            // Lexeme lex;
-            // do {
-            //     lex = lexical.nextToken();
-            //     if (lex.type == TokenType.INVALID_TOKEN || lex.type == TokenType.UNEXPECTED_EOF) {
-            //         error = true;
-            //         break;
-            //     }
-            //     output.append(String.format("%02d: (\"%s\", %s)\n", lexical.getLine(), lex.token, lex.type));
-            // } while (lex.type != TokenType.END_OF_FILE);
-
-
-            // if (error) {
-            //     System.out.println("Caracter desconhecido: " + lex.token + " (linha " + lexical.getLine() + ")");
-            // } else {
-            //     System.out.println(output);
-            //     lexical.getSt().printSymbolTable();
-            // }
 
-        } 
-        catch (Exception e) {
+        try {
+            CompileResult result = new CompilerFacade().compile(Path.of("testes", fileName));
+            for (String message : result.getMessages()) {
+                System.out.println(message);
+            }
+            if (!result.success()) {
+                System.exit(1);
+            }
+            System.out.println("Análise semântica realizada com sucesso!");
+        } catch (Exception e) {
             System.err.println("Erro: " + e.getMessage());
         }
     }
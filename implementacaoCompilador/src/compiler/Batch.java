@@ -0,0 +1,197 @@
+package compiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+import lexical.LexicalError;
+import syntatic.SyntaticAnalysis;
+
+// Compiles many files on a work-stealing pool. Results are printed in the
+// order the files were given, as "file:NN: message" lines or "file: ok",
+// followed by the totals. A bounded window of files is in flight, so
+// memory does not grow with the size of the batch
+public final class Batch {
+
+    private static final String GLOB_CHARS = "*?[{";
+    private static final Path HERE = Path.of(".");
+
+    private final CompilerFacade compiler;
+    private final ForkJoinPool pool;
+    private final int window;
+
+    public Batch(CompilerFacade compiler, int threads) {
+        this.compiler = compiler;
+        this.pool = new ForkJoinPool(threads);
+        this.window = threads * 4;
+    }
+
+    // Arguments: [-j threads] [--stats] [--parallel-lex [bytes]]
+    // (file | directory | glob)... --parallel-lex lexes files of at least
+    // bytes (CompilerFacade.PARALLEL_LEX_MIN by default) on every core first
+    // Returns the exit status: 1 if any file had errors
+    public static int main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean stats = false;
+        int parallelLex = 0;
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--stats")) {
+                stats = true;
+            } else if (args[i].equals("--parallel-lex")) {
+                parallelLex = CompilerFacade.PARALLEL_LEX_MIN;
+                if (i + 1 < args.length && !args[i + 1].isEmpty() && args[i + 1].chars().allMatch(Character::isDigit)) {
+                    parallelLex = Math.max(1, Integer.parseInt(args[++i]));
+                }
+            } else {
+                patterns.add(args[i]);
+            }
+        }
+
+        CompileStats totals = new CompileStats();
+        MetricsSink metrics = !stats ? null : file -> {
+            synchronized (totals) {
+                totals.add(file);
+            }
+        };
+        Batch batch = new Batch(new CompilerFacade(SyntaticAnalysis.DEFAULT_MAX_ERRORS, metrics, parallelLex), threads);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        try {
+            int status = batch.run(expand(patterns), out);
+            if (stats) {
+                synchronized (totals) {
+                    out.print(totals.format());
+                }
+                out.flush();
+            }
+            return status;
+        } finally {
+            batch.pool.shutdown();
+        }
+    }
+
+    // Files in argument order; a directory gives its .txt files and a glob
+    // the files it matches, both recursively and sorted by path
+    public static List<Path> expand(List<String> patterns) {
+        List<Path> files = new ArrayList<>();
+        for (String pattern : patterns) {
+            int glob = firstGlobChar(pattern);
+            if (glob >= 0) {
+                // Walk from the directory before the first wildcard
+                int slash = pattern.lastIndexOf('/', glob);
+                Path base = slash < 0 ? HERE : Path.of(slash == 0 ? "/" : pattern.substring(0, slash));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+                walk(base, p -> matcher.matches(slash < 0 ? base.relativize(p) : p), files);
+            } else if (Files.isDirectory(Path.of(pattern))) {
+                walk(Path.of(pattern), p -> p.toString().endsWith(".txt"), files);
+            } else {
+                files.add(Path.of(pattern));
+            }
+        }
+        return files;
+    }
+
+    private static void walk(Path base, PathMatcher matcher, List<Path> files) {
+        try (Stream<Path> walk = Files.walk(base)) {
+            walk.filter(Files::isRegularFile)
+                .filter(matcher::matches)
+                .sorted()
+                .map(p -> base.equals(HERE) ? base.relativize(p) : p)
+                .forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int firstGlobChar(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int run(List<Path> files, PrintWriter out) {
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(files.size());
+        long start = System.nanoTime();
+        long bytes = 0;
+        int failed = 0;
+
+        for (int i = 0; i < files.size(); i++) {
+            while (tasks.size() < Math.min(files.size(), i + window)) {
+                Path file = files.get(tasks.size());
+                tasks.add(pool.submit(() -> compile(file)));
+            }
+
+            ForkJoinTask<Result> task = tasks.get(i);
+            if (!task.isDone()) {
+                out.flush();
+            }
+            Result result;
+            try {
+                result = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                result = new Result(0, false, List.of(" Erro: " + e.getCause()));
+            }
+            tasks.set(i, null);
+
+            // Diagnostics are "NN: message", so "file:" makes them "file:NN: message"
+            String name = files.get(i).toString();
+            if (result.messages.isEmpty()) {
+                out.println(name + ": ok");
+            }
+            for (String message : result.messages) {
+                out.println(name + ":" + message);
+            }
+            if (!result.success) {
+                failed++;
+            }
+            bytes += result.bytes;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("%d arquivos (%d com erros) em %.2f s: %.0f arquivos/s, %.1f MB/s%n",
+            files.size(), failed, seconds, files.size() / seconds, bytes / 1e6 / seconds);
+        out.flush();
+        return failed > 0 ? 1 : 0;
+    }
+
+    private Result compile(Path file) {
+        try {
+            CompileResult result = compiler.compile(file);
+            return new Result(result.getTokens().getSource().length(), result.success(), result.getMessages());
+        } catch (LexicalError e) {
+            return new Result(0, false, List.of(" Erro: " + e.getMessage()));
+        }
+    }
+
+    private static final class Result {
+        final long bytes;
+        final boolean success;
+        final List<String> messages;
+
+        Result(long bytes, boolean success, List<String> messages) {
+            this.bytes = bytes;
+            this.success = success;
+            this.messages = messages;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import diagnostic.DiagnosticCode;
+
+// Thin client for Server: sends each file (by path, or "-" for the source
+// on stdin) over one connection and prints the replies like Batch does.
+// It loads none of the compiler but DiagnosticCode, so its JVM starts
+// about as fast as any
+public final class Client implements AutoCloseable {
+
+    private static final DiagnosticCode[] CODES = DiagnosticCode.values();
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private boolean failed;
+
+    public Client(String address) throws IOException {
+        this.channel = Server.connect(Server.address(address));
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    // Arguments: [-a address] (file | -)...
+    // Returns the exit status: 1 if any file had errors, 2 without a server
+    public static int main(String[] args) {
+        String address = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-a") && i + 1 < args.length) {
+                address = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        PrintStream stdout = System.out;
+        int status = 0;
+        try (Client client = new Client(address)) {
+            for (String file : files) {
+                List<String> messages = file.equals("-")
+                    ? client.compile(Server.SOURCE, System.in.readAllBytes())
+                    : client.compile(Server.PATH, absolute(file));
+                if (messages.isEmpty()) {
+                    stdout.println(file + ": ok");
+                }
+                for (String message : messages) {
+                    stdout.println(file + ":" + message);
+                }
+                if (client.failed()) {
+                    status = 1;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro: servidor indisponível (" + e.getMessage() + ")");
+            return 2;
+        }
+        return status;
+    }
+
+    // The server resolves paths against its own directory, not ours
+    private static byte[] absolute(String file) {
+        return Path.of(file).toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // One request; returns the "NN: message" lines, empty on success
+    // without warnings
+    public List<String> compile(byte kind, byte[] payload) throws IOException {
+        out.writeByte(kind);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+
+        int count = in.readInt();
+        List<String> messages = new ArrayList<>();
+        if (count == Server.FAILED) {
+            failed = true;
+            messages.add(" Erro: " + in.readUTF());
+            return messages;
+        }
+        failed = false;
+        for (int i = 0; i < count; i++) {
+            failed |= !CODES[in.readByte()].warning;
+            in.readInt();
+            in.readInt();
+            in.readInt();
+            messages.add(in.readUTF());
+        }
+        return messages;
+    }
+
+    // Whether the last reply had errors, not just warnings
+    public boolean failed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One compile() in a flight recording, spanning the whole call
+@Name("compilador.Compile")
+@Label("Compile")
+@Category("Compilador")
+final class CompileEvent extends Event {
+
+    @Label("Source")
+    @DataAmount
+    long bytes;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Identifiers")
+    long identifiers;
+
+    @Label("Semantic Checks")
+    long checks;
+
+    @Label("Tree Nodes")
+    long nodes;
+
+    @Label("Diagnostics")
+    long diagnostics;
+
+    @Label("Read Time")
+    @Timespan
+    long readTime;
+
+    @Label("Lex Time")
+    @Timespan
+    long lexTime;
+
+    @Label("Parse Time")
+    @Timespan
+    long parseTime;
+
+    @Label("Flow Time")
+    @Timespan
+    long flowTime;
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import diagnostic.DiagnosticList;
+import lexical.TokenBuffer;
+import syntatic.Ast;
+
+// What one compile() produced. The compiler keeps no reference to it, but
+// nothing is copied: the diagnostics, tokens and tree are the ones it built
+// and stay mutable, so a caller that shares a result must not change them
+public final class CompileResult {
+
+    private final TokenBuffer tokens;
+    private final DiagnosticList diagnostics;
+    private final Ast ast;
+    private final CompileStats stats;
+
+    CompileResult(TokenBuffer tokens, DiagnosticList diagnostics, Ast ast, CompileStats stats) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.ast = ast;
+        this.stats = stats;
+    }
+
+    // Warnings alone still succeed
+    public boolean success() {
+        return !diagnostics.hasErrors();
+    }
+
+    public DiagnosticList getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Each diagnostic as "NN: message"
+    public List<String> getMessages() {
+        List<String> messages = new ArrayList<>(diagnostics.size());
+        for (int i = 0; i < diagnostics.size(); i++) {
+            messages.add(diagnostics.format(i, tokens.getSource()));
+        }
+        return messages;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    // Complete only on success
+    public Ast getAst() {
+        return ast;
+    }
+
+    // null unless the CompilerFacade has a MetricsSink or JFR records compiles
+    public CompileStats getStats() {
+        return stats;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package compiler;
+
+import java.util.Locale;
+
+import lexical.TokenType;
+
+// What one compile() counted and how long its phases took, or the sum over
+// several (see add). Times are in nanoseconds. Semantic checks run inside
+// the parse, so they are counted but not timed apart
+public final class CompileStats {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    long files;
+    long bytes;
+    long tokens;
+    final long[] tokensByType = new long[TYPES.length];
+    long identifiers;
+    long checks;
+    long nodes;
+    long diagnostics;
+    long readNanos;
+    long lexNanos;
+    long parseNanos;
+    long flowNanos;
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getTokens() {
+        return tokens;
+    }
+
+    public long getTokens(TokenType type) {
+        return tokensByType[type.ordinal()];
+    }
+
+    // Distinct identifiers interned, summed per file
+    public long getIdentifiers() {
+        return identifiers;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Opening the file; 0 for sources given in memory
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    // 0 when the source had a malformed string: it is then lexed as it is
+    // parsed and the time goes to the parse
+    public long getLexNanos() {
+        return lexNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getFlowNanos() {
+        return flowNanos;
+    }
+
+    public void add(CompileStats other) {
+        files += other.files;
+        bytes += other.bytes;
+        tokens += other.tokens;
+        for (int i = 0; i < tokensByType.length; i++) {
+            tokensByType[i] += other.tokensByType[i];
+        }
+        identifiers += other.identifiers;
+        checks += other.checks;
+        nodes += other.nodes;
+        diagnostics += other.diagnostics;
+        readNanos += other.readNanos;
+        lexNanos += other.lexNanos;
+        parseNanos += other.parseNanos;
+        flowNanos += other.flowNanos;
+    }
+
+    // Summary for --stats, one line per group
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT,
+            "%d arquivos, %d bytes, %d tokens, %d identificadores, %d verificações semânticas, %d nós, %d diagnósticos%n",
+            files, bytes, tokens, identifiers, checks, nodes, diagnostics));
+        out.append(String.format(Locale.ROOT,
+            "Tempo: leitura %.2f ms, léxico %.2f ms, sintático %.2f ms, fluxo %.2f ms%n",
+            readNanos / 1e6, lexNanos / 1e6, parseNanos / 1e6, flowNanos / 1e6));
+        out.append("Tokens:");
+        for (TokenType type : TYPES) {
+            long count = tokensByType[type.ordinal()];
+            if (count > 0) {
+                out.append(' ').append(type).append('=').append(count);
+            }
+        }
+        return out.append(System.lineSeparator()).toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,200 @@
+package compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import diagnostic.DiagnosticCode;
+import diagnostic.DiagnosticList;
+import lexical.ArraySource;
+import lexical.BufferSource;
+import lexical.LexicalAnalysis;
+import lexical.LexicalError;
+import lexical.ParallelLexer;
+import lexical.Source;
+import lexical.TokenBuffer;
+import semantic.DataflowAnalysis;
+import syntatic.SyntaticAnalysis;
+
+// Entry point for embedding the compiler. A CompilerFacade holds only its
+// settings and every compile() builds its own lexer, symbol table and
+// parser, so one instance can be shared by any number of threads. Not
+// named Compiler, which would clash with java.lang.Compiler for anyone
+// importing compiler.*
+public final class CompilerFacade {
+
+    // Where ParallelLexer starts to pay: two chunks of its minimum size
+    public static final int PARALLEL_LEX_MIN = 2 * ParallelLexer.MIN_CHUNK_SIZE;
+
+    private final int maxErrors;
+    private final MetricsSink metrics;
+    private final int parallelLex;
+
+    public CompilerFacade() {
+        this(SyntaticAnalysis.DEFAULT_MAX_ERRORS);
+    }
+
+    public CompilerFacade(int maxErrors) {
+        this(maxErrors, null);
+    }
+
+    // metrics may be null; compiles are also measured while a flight
+    // recording has CompileEvent enabled
+    public CompilerFacade(int maxErrors, MetricsSink metrics) {
+        this(maxErrors, metrics, 0);
+    }
+
+    // Sources of parallelLex bytes or more are lexed by ParallelLexer on
+    // the common pool before parsing; 0 lexes every source as it is parsed
+    public CompilerFacade(int maxErrors, MetricsSink metrics, int parallelLex) {
+        this.maxErrors = maxErrors;
+        this.metrics = metrics;
+        this.parallelLex = parallelLex;
+    }
+
+    public CompileResult compile(CharSequence program) {
+        return compile(program.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The array is read in place and must not change during the call
+    public CompileResult compile(byte[] program) {
+        return compile(new ArraySource(program));
+    }
+
+    // Reads the bytes between position and limit, UTF-8 encoded; the
+    // buffer's position is left as it was
+    public CompileResult compile(ByteBuffer program) {
+        return compile(new BufferSource(program));
+    }
+
+    // Throws LexicalError if the file cannot be read
+    public CompileResult compile(Path file) {
+        CompileEvent event = new CompileEvent();
+        if (metrics == null && !event.isEnabled()) {
+            return compile(Source.open(file.toString()), null, null);
+        }
+        event.begin();
+        CompileStats stats = new CompileStats();
+        PhaseEvent phase = new PhaseEvent("read");
+        phase.begin();
+        long start = System.nanoTime();
+        Source source = Source.open(file.toString());
+        stats.readNanos = System.nanoTime() - start;
+        phase.commit();
+        return compile(source, stats, event);
+    }
+
+    public CompileResult compile(Source source) {
+        CompileEvent event = new CompileEvent();
+        if (metrics == null && !event.isEnabled()) {
+            return compile(source, null, null);
+        }
+        event.begin();
+        return compile(source, new CompileStats(), event);
+    }
+
+    // Without stats the parser pulls tokens as it goes. With them, or with
+    // a source big enough for ParallelLexer, the source is lexed first (so
+    // lexing and parsing are also timed apart), unless it has a malformed
+    // string: only a streaming parse reports the errors before one, so the
+    // source is then parsed again that way
+    private CompileResult compile(Source source, CompileStats stats, CompileEvent event) {
+        DiagnosticList diagnostics = new DiagnosticList();
+        LexicalAnalysis lex = new LexicalAnalysis(source);
+        SyntaticAnalysis syntatic = null;
+        long mark = 0;
+        boolean parallel = parallelLex > 0 && source.length() >= parallelLex;
+        if (stats != null || parallel) {
+            PhaseEvent phase = stats == null ? null : new PhaseEvent("lex");
+            if (phase != null) {
+                phase.begin();
+            }
+            mark = System.nanoTime();
+            try {
+                syntatic = new SyntaticAnalysis(parallel ? ParallelLexer.lex(source) : TokenBuffer.lexAll(lex), diagnostics);
+                if (stats != null) {
+                    stats.lexNanos = System.nanoTime() - mark;
+                    mark += stats.lexNanos;
+                }
+            } catch (LexicalError e) {
+                lex.close();
+                lex = new LexicalAnalysis(source.duplicate());
+            }
+            if (phase != null) {
+                phase.commit();
+            }
+        }
+
+        try (LexicalAnalysis streaming = lex) {
+            if (syntatic == null) {
+                syntatic = new SyntaticAnalysis(streaming, diagnostics);
+            }
+            syntatic.setMaxErrors(maxErrors);
+            PhaseEvent phase = stats == null ? null : new PhaseEvent("parse");
+            if (phase != null) {
+                phase.begin();
+            }
+            try {
+                syntatic.start();
+            } catch (LexicalError e) {
+                // A malformed string is the first error: the parser rethrows
+                // it so callers of SyntaticAnalysis see it as before
+                diagnostics.report(DiagnosticCode.MALFORMED_TEXT, e.getLine(), -1, 0);
+            }
+            if (phase != null) {
+                stats.parseNanos = System.nanoTime() - mark;
+                mark += stats.parseNanos;
+                phase.commit();
+            }
+
+            // Flow analysis needs the whole tree, so only after a clean parse
+            if (!syntatic.hasErrors() && !diagnostics.hasErrors()) {
+                phase = stats == null ? null : new PhaseEvent("flow");
+                if (phase != null) {
+                    phase.begin();
+                }
+                new DataflowAnalysis(syntatic.getAst(), syntatic.getTokens(), diagnostics).run();
+                if (phase != null) {
+                    stats.flowNanos = System.nanoTime() - mark;
+                    phase.commit();
+                }
+            }
+        }
+
+        if (stats != null) {
+            record(stats, syntatic, diagnostics, event);
+        }
+        return new CompileResult(syntatic.getTokens(), diagnostics, syntatic.getAst(), stats);
+    }
+
+    private void record(CompileStats stats, SyntaticAnalysis syntatic, DiagnosticList diagnostics, CompileEvent event) {
+        TokenBuffer tokens = syntatic.getTokens();
+        stats.files = 1;
+        stats.bytes = tokens.getSource().length();
+        stats.tokens = tokens.size();
+        for (int i = 0; i < tokens.size(); i++) {
+            stats.tokensByType[tokens.type(i).ordinal()]++;
+        }
+        stats.identifiers = tokens.getSt().size();
+        stats.checks = syntatic.getSemantic().getChecks();
+        stats.nodes = syntatic.getAst().size();
+        stats.diagnostics = diagnostics.size();
+
+        if (event.shouldCommit()) {
+            event.bytes = stats.bytes;
+            event.tokens = stats.tokens;
+            event.identifiers = stats.identifiers;
+            event.checks = stats.checks;
+            event.nodes = stats.nodes;
+            event.diagnostics = stats.diagnostics;
+            event.readTime = stats.readNanos;
+            event.lexTime = stats.lexNanos;
+            event.parseTime = stats.parseNanos;
+            event.flowTime = stats.flowNanos;
+            event.commit();
+        }
+        if (metrics != null) {
+            metrics.record(stats);
+        }
+    }
+}
\ No newline at end of file
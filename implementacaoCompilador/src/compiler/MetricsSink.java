@@ -0,0 +1,8 @@
+package compiler;
+
+// Receives the numbers of every compile() of a CompilerFacade built with
+// one, on the compiling thread; a sink shared by threads must be
+// thread-safe
+public interface MetricsSink {
+    void record(CompileStats stats);
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One phase of a compile(), nested in its CompileEvent on the timeline
+@Name("compilador.Phase")
+@Label("Compile Phase")
+@Category("Compilador")
+final class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    PhaseEvent(String phase) {
+        this.phase = phase;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lexical.LexicalError;
+import vm.ClassCache;
+import vm.ClassGenerator;
+import vm.CodeGenerator;
+import vm.CompiledProgram;
+import vm.Io;
+import vm.Ir;
+import vm.IrBuilder;
+import vm.Optimizer;
+import vm.Program;
+import vm.StreamIo;
+import vm.VirtualMachine;
+import vm.VmError;
+
+// Compiles one file and, if it has no errors, runs it with stdin and stdout
+// as its input and output: on the VM, or with --jvm as a class of its own
+// that HotSpot compiles. --cache dir keeps those classes, so running the
+// same source again skips the compiler. -O1 to -O3 optimize the program
+// first (see Optimizer) and say how much it removed. -d prints the VM's
+// bytecode instead of running it. Diagnostics go to stderr, so that stdout
+// carries only what the program writes
+public final class Runner {
+
+    private Runner() {
+    }
+
+    // Arguments: [-d] [-O0|-O1|-O2|-O3] [--jvm] [--cache dir] file
+    // Returns the exit status: 1 if the file had errors, 2 if it failed
+    // while running
+    public static int main(String[] args) {
+        boolean dump = false;
+        boolean jvm = false;
+        int level = 0;
+        Path cacheDir = null;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d")) {
+                dump = true;
+            } else if (args[i].matches("-O[0-9]") && args[i].charAt(2) - '0' <= Optimizer.MAX_LEVEL) {
+                level = args[i].charAt(2) - '0';
+            } else if (args[i].equals("--jvm")) {
+                jvm = true;
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheDir = Path.of(args[++i]);
+                jvm = true;
+            } else if (file == null) {
+                file = args[i];
+            } else {
+                file = null;
+                break;
+            }
+        }
+        if (file == null) {
+            System.err.println("Uso: --run [-d] [-O0|-O1|-O2|-O3] [--jvm] [--cache diretório] arquivo");
+            return 1;
+        }
+        ClassCache cache = cacheDir != null ? new ClassCache(cacheDir, level) : null;
+
+        Program program = null;
+        CompiledProgram compiled = null;
+        try {
+            byte[] source = null;
+            if (cache != null && !dump) {
+                source = read(Path.of(file));
+                compiled = cached(cache, source);
+            }
+            if (compiled == null) {
+                CompileResult result = source != null ? new CompilerFacade().compile(source) : new CompilerFacade().compile(Path.of(file));
+                for (String message : result.getMessages()) {
+                    System.err.println(message);
+                }
+                if (!result.success()) {
+                    return 1;
+                }
+                Ir ir = new IrBuilder(result.getAst(), result.getTokens()).build();
+                if (level > 0) {
+                    int before = ir.size();
+                    Optimizer optimizer = new Optimizer(level);
+                    int removed = optimizer.run(ir);
+                    System.err.println("-O" + level + ": " + removed + " de " + before + " instruções removidas"
+                        + (optimizer.added() > 0 ? ", " + optimizer.added() + " acrescentadas" : ""));
+                }
+                byte[] classFile = jvm && !dump ? new ClassGenerator(ir).generate() : null;
+                if (classFile != null) {
+                    compiled = CompiledProgram.define(classFile);
+                    if (cache != null) {
+                        store(cache, source, classFile);
+                    }
+                } else {
+                    program = new CodeGenerator(ir).generate();
+                }
+            }
+        } catch (LexicalError | VmError e) {
+            System.err.println("Erro: " + e.getMessage());
+            return 1;
+        }
+
+        if (dump) {
+            System.out.print(program);
+            return 0;
+        }
+        Io io = new StreamIo(System.in, System.out);
+        try {
+            if (compiled != null) {
+                compiled.run(io);
+            } else {
+                VirtualMachine.run(program, io);
+            }
+            return 0;
+        } catch (VmError e) {
+            System.err.println("Erro de execução: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    // CompilerFacade.compile(Path) reports unreadable files the same way
+    private static byte[] read(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new LexicalError("Não foi possível abrir o arquivo");
+        }
+    }
+
+    // A damaged or unreadable entry is a miss: the source is compiled again
+    private static CompiledProgram cached(ClassCache cache, byte[] source) {
+        try {
+            byte[] classFile = cache.get(source);
+            return classFile == null ? null : CompiledProgram.define(classFile);
+        } catch (UncheckedIOException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // The program runs even if its class cannot be kept
+    private static void store(ClassCache cache, byte[] source, byte[] classFile) {
+        try {
+            cache.put(source, classFile);
+        } catch (UncheckedIOException e) {
+            System.err.println("Aviso: cache: " + e.getCause().getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+package compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import diagnostic.DiagnosticList;
+import lexical.LexicalError;
+
+// Compile daemon: one warm JVM answering requests on a Unix-domain socket
+// (the default) or a loopback TCP port. The socket is only for its owner:
+// it sits in a directory no one else may enter and is made 0600, as a
+// PATH request reads any file the server can. A loopback port has no such
+// guard and is open to every local user.
+//
+// Each request is a kind byte, an int length and that many bytes: SOURCE
+// carries the program itself, PATH a UTF-8 file name read by the server.
+// The reply is an int count and, per diagnostic, its code ordinal (byte),
+// line, start and length (ints) and its "NN: message" text (writeUTF, cut
+// to MAX_MESSAGE chars). A
+// request that cannot be compiled at all gets count FAILED and one text.
+// A connection may carry any number of requests, answered in order; one
+// whose length is outside 0..MAX_SOURCE gets FAILED and the connection ends
+public final class Server {
+
+    public static final byte SOURCE = 'S';
+    public static final byte PATH = 'P';
+    public static final int FAILED = -1;
+    public static final int MAX_SOURCE = 64 << 20;
+
+    // writeUTF takes at most 65535 bytes, up to three per char
+    private static final int MAX_MESSAGE = 20000;
+
+    private static final String WARM_UP = "app aquecimento\n"
+        + "var integer a, b; real r\n"
+        + "init\n"
+        + " read(a); b := 0; r := 0.5;\n"
+        + " repeat\n"
+        + "  if a > b && !(a = 3) then b := b + 1 else r := r / 2 * a end;\n"
+        + "  write({parcial}); write(-b * (a - 1))\n"
+        + " until b >= a\n"
+        + "return\n";
+
+    private final CompilerFacade compiler;
+
+    public Server(CompilerFacade compiler) {
+        this.compiler = compiler;
+    }
+
+    // Arguments: [address]; see address()
+    public static int main(String[] args) {
+        SocketAddress address = address(args.length > 0 ? args[0] : null);
+        Server server = new Server(new CompilerFacade());
+        server.warmUp(2000);
+        try {
+            server.serve(address);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erro: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // A port number means loopback TCP, anything else a socket file; the
+    // default is compilador.sock in $XDG_RUNTIME_DIR or, without one, in
+    // compilador-<user> in the temporary directory
+    public static SocketAddress address(String spec) {
+        if (spec == null) {
+            return UnixDomainSocketAddress.of(defaultSocket());
+        }
+        if (!spec.isEmpty() && spec.chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    private static Path defaultSocket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path dir = runtime != null && !runtime.isEmpty()
+            ? Path.of(runtime)
+            : Path.of(System.getProperty("java.io.tmpdir"), "compilador-" + System.getProperty("user.name"));
+        return dir.resolve("compilador.sock").toAbsolutePath();
+    }
+
+    public static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        channel.connect(address);
+        return channel;
+    }
+
+    // Runs the JIT through the whole pipeline before the first request
+    public void warmUp(int rounds) {
+        byte[] program = WARM_UP.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < rounds; i++) {
+            compiler.compile(program);
+        }
+    }
+
+    public void serve(SocketAddress address) throws IOException {
+        ServerSocketChannel listener;
+        Path file = null;
+        if (address instanceof UnixDomainSocketAddress) {
+            file = ((UnixDomainSocketAddress) address).getPath().toAbsolutePath();
+            prepare(file);
+            Path socket = file;
+            listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing left to do on the way out
+                }
+            }));
+        } else {
+            listener = ServerSocketChannel.open();
+        }
+
+        ExecutorService connections = connectionExecutor();
+        try (ServerSocketChannel server = listener) {
+            server.bind(address);
+            if (file != null && posix()) {
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+            }
+            System.err.println("Aguardando em " + address);
+            for (;;) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> handle(channel));
+            }
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    // Removes a socket left by an earlier server, refusing any file that
+    // is not our own socket. The default socket's directory is made owner
+    // only if it is missing, and refused if someone else could enter it
+    private static void prepare(Path file) throws IOException {
+        boolean posix = posix();
+        UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+        Path dir = file.getParent();
+        if (file.equals(defaultSocket())) {
+            if (!Files.isDirectory(dir)) {
+                if (posix) {
+                    Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(dir);
+                }
+            }
+            if (posix) {
+                if (!Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+                    throw new IOException("o diretório " + dir + " pertence a outro usuário");
+                }
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+                permissions.retainAll(Set.of(
+                    PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_EXECUTE,
+                    PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE));
+                if (!permissions.isEmpty()) {
+                    throw new IOException("o diretório " + dir + " está aberto a outros usuários");
+                }
+            }
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!attributes.isOther() || posix && !Files.getOwner(file, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+            throw new IOException(file + " não é um socket deste usuário");
+        }
+        Files.delete(file);
+    }
+
+    private static boolean posix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    // Virtual threads where the JDK has them (21+), otherwise a cached pool
+    // of daemon platform threads
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "compilador-conexao");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (SocketChannel c = channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(c)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(c)))) {
+            for (;;) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                int length = in.readInt();
+                if (length < 0 || length > MAX_SOURCE) {
+                    // Nothing tells where the next request would start
+                    failed(out, "Tamanho de requisição inválido: " + length);
+                    out.flush();
+                    return;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                reply(kind, payload, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; its connection is all there is to drop
+        }
+    }
+
+    private void reply(byte kind, byte[] payload, DataOutputStream out) throws IOException {
+        CompileResult result;
+        try {
+            if (kind == SOURCE) {
+                result = compiler.compile(payload);
+            } else if (kind == PATH) {
+                result = compiler.compile(Path.of(new String(payload, StandardCharsets.UTF_8)));
+            } else {
+                failed(out, "Requisição inválida: " + kind);
+                return;
+            }
+        } catch (LexicalError e) {
+            failed(out, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            // A bad path or a compiler bug fails this request, not the connection
+            failed(out, e.getMessage() != null ? e.getMessage() : e.toString());
+            return;
+        }
+
+        DiagnosticList diagnostics = result.getDiagnostics();
+        out.writeInt(diagnostics.size());
+        for (int i = 0; i < diagnostics.size(); i++) {
+            out.writeByte(diagnostics.code(i).ordinal());
+            out.writeInt(diagnostics.line(i));
+            out.writeInt(diagnostics.start(i));
+            out.writeInt(diagnostics.length(i));
+            text(out, diagnostics.format(i, result.getTokens().getSource()));
+        }
+    }
+
+    private static void failed(DataOutputStream out, String message) throws IOException {
+        out.writeInt(FAILED);
+        text(out, message);
+    }
+
+    // A message quoting a long token would overflow writeUTF mid-reply
+    private static void text(DataOutputStream out, String message) throws IOException {
+        out.writeUTF(message.length() > MAX_MESSAGE ? message.substring(0, MAX_MESSAGE) + "..." : message);
+    }
+}
\ No newline at end of file
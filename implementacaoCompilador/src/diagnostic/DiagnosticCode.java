@@ -0,0 +1,40 @@
+package diagnostic;
+
+public enum DiagnosticCode {
+    // LEXICAL AND SYNTAX
+    INVALID_TOKEN("Lexema inválido [%s]"),
+    UNEXPECTED_TOKEN("Lexema não esperado [%s]"),
+    UNEXPECTED_EOF("Fim de arquivo inesperado"),
+    MALFORMED_TEXT("String má formada"),
+
+    // SEMANTIC
+    RESERVED_NAME("O nome da variável não pode ser uma palavra reservada"),
+    ALREADY_DECLARED("A variável já foi declarada"),
+    NOT_DECLARED("Variável não declarada"),
+    APP_NOT_VARIABLE("O nome da aplicação não é uma variável"),
+    TYPE_MISMATCH("Tipo da variável não corresponde ao tipo da expressão"),
+    NOT_BOOLEAN("O expressão condicional precisa ser um booleano"),
+    APP_IN_ARITHMETIC("O nome da aplicação não pode ser utilizado em uma operação aritmética"),
+    APP_IN_COMPARISON("O nome da aplicação não pode ser utilizado em uma operação de comparação"),
+    APP_IN_LOGIC("O nome da aplicação não pode ser utilizado em uma operação lógica"),
+    INVALID_OPERATION("Operação inválida"),
+
+    // DATAFLOW
+    NOT_ASSIGNED("A variável é usada antes de receber um valor"),
+    UNUSED_VARIABLE("A variável nunca é utilizada", true),
+    UNUSED_VALUE("O valor atribuído à variável nunca é utilizado", true);
+
+    // May have a %s for the text of the token
+    public final String message;
+    // Warnings are reported but do not fail the compilation
+    public final boolean warning;
+
+    DiagnosticCode(String message) {
+        this(message, false);
+    }
+
+    DiagnosticCode(String message, boolean warning) {
+        this.message = message;
+        this.warning = warning;
+    }
+}
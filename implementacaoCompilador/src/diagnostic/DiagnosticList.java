@@ -0,0 +1,79 @@
+package diagnostic;
+
+import java.util.Arrays;
+
+import lexical.Source;
+
+// Keeps diagnostics in parallel int arrays, like TokenBuffer keeps tokens;
+// messages are only built by format()
+public class DiagnosticList implements DiagnosticSink {
+
+    private static final DiagnosticCode[] CODES = DiagnosticCode.values();
+
+    private int[] code = new int[16];
+    private int[] line = new int[16];
+    private int[] start = new int[16];
+    private int[] length = new int[16];
+    private int size;
+
+    @Override
+    public void report(DiagnosticCode code, int line, int start, int length) {
+        if (size == this.code.length) {
+            int capacity = size * 2;
+            this.code = Arrays.copyOf(this.code, capacity);
+            this.line = Arrays.copyOf(this.line, capacity);
+            this.start = Arrays.copyOf(this.start, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+        }
+        this.code[size] = code.ordinal();
+        this.line[size] = line;
+        this.start[size] = start;
+        this.length[size] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean hasErrors() {
+        for (int i = 0; i < size; i++) {
+            if (!CODES[code[i]].warning) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public DiagnosticCode code(int i) {
+        return CODES[code[i]];
+    }
+
+    public int line(int i) {
+        return line[i];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    // "NN: message", or "NN: Aviso: message" for a warning, with the token
+    // text taken from source
+    public String format(int i, Source source) {
+        String token = start[i] < 0 ? "" : source.text(start[i], length[i]);
+        return String.format(code(i).warning ? "%02d: Aviso: %s" : "%02d: %s",
+            line[i], String.format(code(i).message, token));
+    }
+}
@@ -0,0 +1,11 @@
+package diagnostic;
+
+// Receives diagnostics as plain values, so reporting an error allocates
+// nothing. start and length are the byte span of the offending token in
+// the source, or -1 and 0 when there is no token (a malformed string).
+// line is the original compiler's: for a type error found once the parser
+// has moved on, the line of the token after the construct, which may not
+// be the offending token's
+public interface DiagnosticSink {
+    void report(DiagnosticCode code, int line, int start, int length);
+}
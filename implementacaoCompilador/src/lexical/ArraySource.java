@@ -0,0 +1,60 @@
+package lexical;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Heap source: the file is pulled through a FileChannel in large blocks.
+public class ArraySource extends Source {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] data;
+
+    public ArraySource(byte[] data) {
+        super(data.length);
+        this.data = data;
+    }
+
+    static ArraySource read(FileChannel channel, long size) throws IOException {
+        byte[] data = new byte[(int) size];
+        int offset = 0;
+        while (offset < data.length) {
+            int n = channel.read(ByteBuffer.wrap(data, offset, Math.min(BLOCK_SIZE, data.length - offset)));
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        if (offset < data.length) {
+            throw new IOException("Fim de arquivo inesperado");
+        }
+        return new ArraySource(data);
+    }
+
+    @Override
+    public int byteAt(int offset) {
+        return data[offset] & 0xFF;
+    }
+
+    @Override
+    protected long wordAt(int offset) {
+        return (long) WORD.get(data, offset);
+    }
+
+    @Override
+    public Source duplicate() {
+        return new ArraySource(data);
+    }
+
+    @Override
+    public String text(int start, int length) {
+        return new String(data, start, length, StandardCharsets.UTF_8);
+    }
+}
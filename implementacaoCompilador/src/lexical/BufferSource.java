@@ -0,0 +1,44 @@
+package lexical;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Source over a ByteBuffer, usually a MappedByteBuffer for big files.
+public class BufferSource extends Source {
+
+    private final ByteBuffer data;
+
+    public BufferSource(ByteBuffer data) {
+        super(data.remaining());
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static BufferSource map(FileChannel channel, long size) throws IOException {
+        return new BufferSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+
+    @Override
+    public int byteAt(int offset) {
+        return data.get(offset) & 0xFF;
+    }
+
+    @Override
+    protected long wordAt(int offset) {
+        return data.getLong(offset);
+    }
+
+    @Override
+    public Source duplicate() {
+        return new BufferSource(data.duplicate());
+    }
+
+    @Override
+    public String text(int start, int length) {
+        byte[] bytes = new byte[length];
+        data.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -2,11 +2,27 @@ package lexical;
 
 public class Lexeme {
 
-    public String token;
     public TokenType type;
+    public int start;
+    public int length;
+    public int id;
 
-    public Lexeme(String token, TokenType type) {
-        this.token = token;
+    private Source source;
+    private String token;
+
+    // Slice [start, start + length) of the source; the text is only built on demand
+    public Lexeme(Source source, int start, int length, TokenType type) {
+        this.source = source;
+        this.start = start;
+        this.length = length;
         this.type = type;
+        this.id = -1;
+    }
+
+    public String token() {
+        if (token == null) {
+            token = source.text(start, length);
+        }
+        return token;
     }
-}
\ No newline at end of file
+}
@@ -1,31 +1,40 @@
 package lexical;
 
-import java.io.FileInputStream;
-import java.io.PushbackInputStream;
-
 public class LexicalAnalysis implements AutoCloseable {
 
     private int line;
     private SymbolTable st;
-    private PushbackInputStream input;
+    private Source input;
+
+    private static final int REPLACEMENT = 0xFFFD;
+
+    // Bytes taken by the character last returned by getc()
+    private int width;
+
+    // Slice and identifier id of the token last returned by scan()
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenId;
 
     public LexicalAnalysis(String filename) {
-        try {
-            input = new PushbackInputStream(new FileInputStream(filename), 2);
-        } catch (Exception e) {
-            throw new LexicalError("Não foi possível abrir o arquivo");
-        }
+        this(Source.open(filename));
+    }
 
+    public LexicalAnalysis(Source input) {
+        this.input = input;
         st = new SymbolTable();
         line = 1;
     }
 
+    // Lexer resuming at an offset known to be between tokens
+    LexicalAnalysis(Source input, int position, int line) {
+        this(input);
+        this.input.seek(position);
+        this.line = line;
+    }
+
     public void close() {
-        try {
-            input.close();
-        } catch (Exception e) {
-            throw new LexicalError("Não foi possível fechar o arquivo");
-        }
+        input.close();
     }
 
     public int getLine() {
@@ -33,188 +42,157 @@ public class LexicalAnalysis implements AutoCloseable {
     }
 
     public Lexeme nextToken() {
-        Lexeme lex = new Lexeme("", TokenType.END_OF_FILE);
-
-        int state = 1;
-        while (state != 12 && state != 13) {
-            int c = getc();
-        
-            switch (state) {
-                case 1:
-                    if (c == ' ' || c == '\t' || c == '\r') {
-                        state = 1;
-                    } else if (c == '\n') {
-                        this.line++;
-                    } else if (Character.isLetter(c) || c == '_') {
-                        lex.token += (char) c;
-                        state = 2;
-                    } else if (Character.isDigit(c)) {
-                        lex.token += (char) c;
-                        state = 3;
-                    } else if (c == '<' || c == '>' || c == '!') {
-                        lex.token += (char) c;
-                        state = 4;
-                    } else if (c == ':') {
-                        lex.token += (char) c;
-                        state = 5;
-                    } else if (c == '|') {
-                        lex.token += (char) c;
-                        state = 6;
-                    } else if (c == '&') {
-                        lex.token += (char) c;
-                        state = 7;
-                    } else if (c == '%') {
-                        state = 10;
-                    } else if (c == '{') {
-                        state = 11;
-                    } else if (c == ';' || c == ',' || c == '=' || c == '+' || c == '-' || c == '*' || c == '/' || c == '(' || c == ')') {
-                        lex.token += (char) c;
-                        state = 12;
-                    } else if (c == -1) {
-                        lex.type = TokenType.END_OF_FILE;
-                        state = 13;
-                    } else {
-                        lex.token += (char) c;
-                        lex.type = TokenType.INVALID_TOKEN;
-                        state = 13;
-                    }
-                    break;
-                case 2:
-                    if  (c == '_' || Character.isLetter(c) || Character.isDigit(c)) {
-                        lex.token += (char) c;
-                        state = 2;
-                    } else {
-                        ungetc(c);
-                        state = 12;
-                    }
-                    break;
-                case 3:
-                    if(Character.isDigit(c)){
-                        lex.token += (char) c;
-                        state = 3;
-                    } else if(c == '.'){
-                        lex.token += (char) c;
-                        state = 8; 
-                    }else{
-                        ungetc(c);
-                        lex.type = TokenType.INT_NUMBER;
-                        state = 13;
-                    }          
-                    break;
-                case 4:
-                    if (c == '=') {
-                        lex.token += (char) c;
-                        state = 12;
-                    } else {
-                        ungetc(c);
-                        state = 12;
-                    }
-                    break;
-                case 5:
-                    if (c == '=') {
-                        lex.token += (char) c;
-                        state = 12;
-                    } else {
-                        lex.token += (char) c;
-                        lex.type = TokenType.INVALID_TOKEN;
-                        state = 13;
-                    }          
-                    break;
-                case 6:
-                    if (c == '|') {
-                        lex.token += (char) c;
-                        state = 12;
-                    } else {
-                        lex.token += (char) c;
-                        lex.type = TokenType.INVALID_TOKEN;
-                        state = 13;
-                    }
-                    break;
-                case 7:
-                    if (c == '&') {
-                        lex.token += (char) c;
-                        state = 12;
-                    } else {
-                        lex.token += (char) c;
-                        lex.type = TokenType.INVALID_TOKEN;
-                        state = 12;
-                    }                   
-                    break;
-                case 8:
-                    if (Character.isDigit(c)) {
-                        lex.token += (char) c;
-                        state = 9;
-                    } else {
-                        lex.token += (char) c;
-                        lex.type = TokenType.INVALID_TOKEN;
-                        state = 13;
-                    }
-                    break;
-                case 9:
-                    if (Character.isDigit(c)) {
-                        lex.token += (char) c;
-                        state = 9;
-                    } else {
-                        ungetc(c);
-                        lex.type = TokenType.REAL_NUMBER;
-                        state = 13;
-                    }
-                    break;
-                case 10:
-                    if (c == '\n') {
-                        this.line++;
-                        state = 1;
-                    } else if (c == -1) {
-                        lex.type = TokenType.END_OF_FILE;
-                        state = 13;
-                    } else {
-                        state = 10;
-                    }
-                    break;
-                case 11:
-                    if (c == '}') { 
-                        lex.type = TokenType.TEXT;
-                        state = 13;
-                    } else if (c == -1) {
-                        throw new LexicalError(String.format("String má formada (linha %02d)", this.line));
-                    } else {
-                        if (c == '\n'){
-                            this.line++;
-                        }
-                        lex.token += (char) c;
-                        state = 11;
-                    }
-                    break;
-                default:
-                    throw new LexicalError("Ocorreu um erro inesperado");
+        TokenType type = scan();
+        Lexeme lex = new Lexeme(input, tokenStart, tokenLength, type);
+        lex.id = tokenId;
+        return lex;
+    }
+
+    // Same as nextToken(), but leaves the slice in tokenStart/tokenLength/tokenId
+    // instead of allocating a Lexeme
+    TokenType scan() {
+        int state = TransitionTable.START;
+        int start = input.position();
+        int action;
+        int c;
+
+        this.line += input.skipBlanks();
+        while (true) {
+            c = getc();
+            int cls = TransitionTable.classOf(c);
+            int next = TransitionTable.NEXT[state * TransitionTable.CLASSES + cls];
+            if (next < 0) {
+                action = next;
+                break;
+            }
+            if (cls == TransitionTable.NEWLINE) {
+                this.line++;
+            }
+            if (state == TransitionTable.START) {
+                start = input.position() - width;
             }
+            if (next != state) {
+                state = next;
+                skip(state);
+            }
+        }
+
+        if (state == TransitionTable.START || state == TransitionTable.COMMENT) {
+            start = c == -1 ? input.position() : input.position() - width;
         }
-        if (state == 12) {
-            lex.type = st.find(lex.token);
+        if (TransitionTable.unget(action)) {
+            ungetc(c);
         }
 
-        return lex;
+        TokenType type = TransitionTable.type(action);
+        tokenStart = start;
+        tokenLength = input.position() - start;
+        tokenId = -1;
+        switch (type) {
+            case UNEXPECTED_EOF:
+                throw malformedText(this.line);
+            case TEXT:
+                tokenStart = start + 1;
+                tokenLength -= 2;
+                return type;
+            case NAME:
+                TokenType keyword = SymbolTable.keyword(input, start, tokenLength);
+                if (keyword != null) {
+                    return keyword;
+                }
+                tokenId = st.intern(input, start, tokenLength);
+                return type;
+            default:
+                return type;
+        }
+    }
+
+    static LexicalError malformedText(int line) {
+        return new LexicalError(String.format("String má formada (linha %02d)", line), line);
+    }
+
+    Source getSource() {
+        return this.input;
+    }
+
+    int getTokenStart() {
+        return this.tokenStart;
+    }
+
+    int getTokenLength() {
+        return this.tokenLength;
+    }
+
+    int getTokenId() {
+        return this.tokenId;
     }
 
     public SymbolTable getSt() {
         return this.st;
     }
 
+    // Bulk paths for runs where every byte takes the same transition
+    private void skip(int state) {
+        switch (state) {
+            case TransitionTable.START:
+                this.line += input.skipBlanks();
+                break;
+            case TransitionTable.COMMENT:
+                input.skipToNewline();
+                break;
+            case TransitionTable.TEXT:
+                this.line += input.skipToBrace();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // ASCII is returned as is; anything else is decoded as UTF-8 into a code
+    // point, with width telling how many bytes it took
     private int getc() {
-        try {
-            return input.read();
-        } catch (Exception e) {
-            throw new LexicalError("Não foi possível ler o arquivo");
+        int c = input.getc();
+        width = 1;
+        if (c >= 0x80) {
+            c = decode(c);
+        }
+        return c;
+    }
+
+    private int decode(int lead) {
+        int n;
+        int cp;
+        if (lead >= 0xF0 && lead < 0xF8) {
+            n = 3;
+            cp = lead & 0x07;
+        } else if (lead >= 0xE0) {
+            n = 2;
+            cp = lead & 0x0F;
+        } else if (lead >= 0xC0) {
+            n = 1;
+            cp = lead & 0x1F;
+        } else {
+            return REPLACEMENT;
+        }
+        int pos = input.position();
+        if (lead >= 0xF8 || pos + n > input.length()) {
+            return REPLACEMENT;
         }
+        for (int i = 0; i < n; i++) {
+            int b = input.byteAt(pos + i);
+            if ((b & 0xC0) != 0x80) {
+                return REPLACEMENT;
+            }
+            cp = cp << 6 | (b & 0x3F);
+        }
+        input.seek(pos + n);
+        width = n + 1;
+        return cp;
     }
 
     private void ungetc(int c) {
         if (c != -1) {
-            try {
-                input.unread(c);
-            } catch (Exception e) {
-                throw new LexicalError("Não foi possível executar (ungetc)");
-            }
+            input.seek(input.position() - width);
         }
     }
 }
\ No newline at end of file
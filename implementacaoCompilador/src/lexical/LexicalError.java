@@ -1,7 +1,21 @@
 package lexical;
 
 public class LexicalError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // Source line of the error, or -1 when it is not about the input text
+    private final int line;
+
     public LexicalError( String msg) {
+        this(msg, -1);
+    }
+
+    public LexicalError(String msg, int line) {
         super(msg);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return this.line;
     }
 }
@@ -0,0 +1,154 @@
+package lexical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Lexes a source in newline-aligned chunks on a ForkJoinPool and stitches
+// the chunks into the TokenBuffer that TokenBuffer.lexAll() would produce.
+//
+// Every chunk is lexed speculatively as if it began between tokens, with its
+// own SymbolTable and lines counted from 1. Only a {...} literal can carry a
+// token across a newline (a % comment always ends at one), so when the stitch
+// finds that the previous chunk's last token ran past a boundary, it re-lexes
+// that chunk from where the token really ended.
+public final class ParallelLexer {
+
+    public static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private ParallelLexer() {
+    }
+
+    public static TokenBuffer lex(Source source) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return lex(source, pool, Math.min(pool.getParallelism() * 4, source.length() / MIN_CHUNK_SIZE));
+    }
+
+    public static TokenBuffer lex(Source source, ForkJoinPool pool, int chunks) {
+        int[] bounds = split(source, Math.max(1, chunks));
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int begin = bounds[i];
+            int end = i + 2 == bounds.length ? Integer.MAX_VALUE : bounds[i + 1];
+            tasks.add(pool.submit(() -> Chunk.lex(source.duplicate(), begin, end, 1)));
+        }
+
+        SymbolTable st = new SymbolTable();
+        TokenBuffer tokens = new TokenBuffer(source, st, Math.max(256, source.length() / 8));
+        int pos = 0;
+        int line = 1;
+        for (int i = 0; i < tasks.size(); i++) {
+            int begin = bounds[i];
+            int end = i + 1 == tasks.size() ? Integer.MAX_VALUE : bounds[i + 1];
+
+            Chunk chunk;
+            int lineOffset;
+            if (pos <= begin) {
+                chunk = tasks.get(i).join();
+                lineOffset = line + countNewlines(source, pos, begin) - 1;
+            } else if (pos < end) {
+                tasks.get(i).join();
+                chunk = Chunk.lex(source.duplicate(), pos, end, line);
+                lineOffset = 0;
+            } else {
+                tasks.get(i).join();
+                continue;
+            }
+
+            int[] idMap = new int[chunk.names];
+            for (int id = 0; id < idMap.length; id++) {
+                idMap[id] = st.intern(chunk.st, id);
+            }
+            tokens.append(chunk.tokens, chunk.tokens.size(), lineOffset, idMap);
+
+            if (chunk.errorLine > 0) {
+                throw LexicalAnalysis.malformedText(chunk.errorLine + lineOffset);
+            }
+            if (chunk.tokens.size() > 0) {
+                pos = chunk.lastEnd;
+                line = chunk.lastLine + lineOffset;
+            }
+        }
+        return tokens;
+    }
+
+    // Chunk boundaries, each one just past a newline; the last one is the length
+    private static int[] split(Source source, int chunks) {
+        int length = source.length();
+        int[] bounds = new int[chunks + 1];
+        int n = 1;
+        for (int i = 1; i < chunks; i++) {
+            int offset = Math.max((int) ((long) length * i / chunks), bounds[n - 1]);
+            while (offset < length && source.byteAt(offset) != '\n') {
+                offset++;
+            }
+            if (offset + 1 < length && offset + 1 > bounds[n - 1]) {
+                bounds[n++] = offset + 1;
+            }
+        }
+        bounds[n++] = length;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    // Only whitespace and comments lie between two chunks' tokens, and the
+    // lexer counts every newline there
+    private static int countNewlines(Source source, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (source.byteAt(i) == '\n') {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static final class Chunk {
+        TokenBuffer tokens;
+        SymbolTable st;
+        // Identifiers interned by the kept tokens; the token read past the
+        // end may have added one more
+        int names;
+        // Offset just past the last token kept, and the lexer's line there
+        int lastEnd;
+        int lastLine;
+        // Line of an unterminated {...} opened inside the chunk, or 0
+        int errorLine;
+
+        // Tokens starting in [begin, end); the last one may run past end
+        static Chunk lex(Source source, int begin, int end, int line) {
+            Chunk chunk = new Chunk();
+            LexicalAnalysis lex = new LexicalAnalysis(source, begin, line);
+            chunk.st = lex.getSt();
+            chunk.tokens = new TokenBuffer(source, chunk.st, Math.max(256, (Math.min(end, source.length()) - begin) / 8));
+            chunk.lastEnd = begin;
+            chunk.lastLine = line;
+
+            while (true) {
+                int mark = chunk.tokens.size();
+                chunk.names = chunk.st.size();
+                TokenType type;
+                try {
+                    type = chunk.tokens.add(lex);
+                } catch (LexicalError e) {
+                    if (lex.getTokenStart() < end) {
+                        chunk.errorLine = lex.getLine();
+                    }
+                    break;
+                }
+                if (lex.getTokenStart() >= end) {
+                    chunk.tokens.truncate(mark);
+                    break;
+                }
+                chunk.lastEnd = source.position();
+                chunk.lastLine = lex.getLine();
+                if (type == TokenType.END_OF_FILE) {
+                    break;
+                }
+            }
+            return chunk;
+        }
+    }
+}
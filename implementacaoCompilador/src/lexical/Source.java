@@ -0,0 +1,152 @@
+package lexical;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Whole input addressable by offset; getc/ungetc only move a cursor over it.
+public abstract class Source implements AutoCloseable {
+
+    // Files at least this large are memory-mapped instead of read into the heap
+    public static final long MAPPED_THRESHOLD = 8L * 1024 * 1024;
+
+    protected final int length;
+    private int pos;
+
+    protected Source(int length) {
+        this.length = length;
+        this.pos = 0;
+    }
+
+    public static Source open(String filename) {
+        return open(filename, null);
+    }
+
+    // mapped == null picks the mode from the file size
+    public static Source open(String filename, Boolean mapped) {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new LexicalError("Arquivo muito grande");
+            }
+            if (mapped == null) {
+                mapped = size >= MAPPED_THRESHOLD;
+            }
+            return mapped ? BufferSource.map(channel, size) : ArraySource.read(channel, size);
+        } catch (IOException e) {
+            throw new LexicalError("Não foi possível abrir o arquivo");
+        }
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public int position() {
+        return this.pos;
+    }
+
+    public int getc() {
+        if (pos >= length) {
+            return -1;
+        }
+        return byteAt(pos++);
+    }
+
+    public void ungetc() {
+        pos--;
+    }
+
+    void seek(int offset) {
+        pos = offset;
+    }
+
+    // Advances past ' ', '\t', '\r' and '\n'; returns the newlines skipped
+    public int skipBlanks() {
+        int newlines = 0;
+        while (pos + 8 <= length) {
+            long word = wordAt(pos);
+            long lf = Swar.match(word, Swar.LF);
+            long blank = Swar.match(word, Swar.SPACE) | Swar.match(word, Swar.TAB) | Swar.match(word, Swar.CR) | lf;
+            if (blank != Swar.ALL) {
+                int n = Swar.firstMissing(blank);
+                newlines += Swar.countBefore(lf, n);
+                pos += n;
+                return newlines;
+            }
+            newlines += Long.bitCount(lf);
+            pos += 8;
+        }
+        while (pos < length) {
+            int c = byteAt(pos);
+            if (c == '\n') {
+                newlines++;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return newlines;
+    }
+
+    // Advances to the next '\n' (or the end), e.g. over a comment body
+    public void skipToNewline() {
+        while (pos + 8 <= length) {
+            long lf = Swar.match(wordAt(pos), Swar.LF);
+            if (lf != 0) {
+                pos += Swar.first(lf);
+                return;
+            }
+            pos += 8;
+        }
+        while (pos < length && byteAt(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    // Advances to the next '}' (or the end), e.g. over a {...} body; returns
+    // the newlines skipped
+    public int skipToBrace() {
+        int newlines = 0;
+        while (pos + 8 <= length) {
+            long word = wordAt(pos);
+            long lf = Swar.match(word, Swar.LF);
+            long brace = Swar.match(word, Swar.BRACE);
+            if (brace != 0) {
+                int n = Swar.first(brace);
+                newlines += Swar.countBefore(lf, n);
+                pos += n;
+                return newlines;
+            }
+            newlines += Long.bitCount(lf);
+            pos += 8;
+        }
+        while (pos < length) {
+            int c = byteAt(pos);
+            if (c == '}') {
+                break;
+            }
+            if (c == '\n') {
+                newlines++;
+            }
+            pos++;
+        }
+        return newlines;
+    }
+
+    // Unsigned byte (0..255) at an absolute offset
+    public abstract int byteAt(int offset);
+
+    // Bytes [offset, offset + 8) as a little-endian long
+    protected abstract long wordAt(int offset);
+
+    // Same bytes with an independent cursor
+    public abstract Source duplicate();
+
+    // Decodes [start, start + length) as UTF-8
+    public abstract String text(int start, int length);
+
+    public void close() {
+    }
+}
@@ -0,0 +1,45 @@
+package lexical;
+
+// Byte-parallel tests on 8 input bytes packed little-endian in a long:
+// a match mask has 0x80 in each byte lane holding the wanted value.
+final class Swar {
+
+    static final long SPACE = broadcast(' ');
+    static final long TAB = broadcast('\t');
+    static final long CR = broadcast('\r');
+    static final long LF = broadcast('\n');
+    static final long BRACE = broadcast('}');
+
+    static final long ALL = 0x8080808080808080L;
+
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private Swar() {
+    }
+
+    static long broadcast(int c) {
+        return (c & 0xFFL) * 0x0101010101010101L;
+    }
+
+    // Exact per-lane equality: no carries cross lanes, unlike the usual
+    // (x - 0x01..) & ~x trick
+    static long match(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    // Index of the first matching byte; mask must not be 0
+    static int first(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    // Index of the first byte not in mask; mask must not be ALL
+    static int firstMissing(long mask) {
+        return Long.numberOfTrailingZeros(~mask & ALL) >>> 3;
+    }
+
+    // Matches among the first n bytes
+    static int countBefore(long mask, int n) {
+        return Long.bitCount(mask & ((1L << (n << 3)) - 1));
+    }
+}
@@ -1,82 +1,184 @@
 package lexical;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 
 public class SymbolTable {
 
-    private Map<String, TokenType> st;
-    private Map<String, Integer> ids;
-    private Integer idNumber;
+    private static final Map<String, TokenType> KEYWORDS = Map.ofEntries(
+        Map.entry("app", TokenType.APP),
+        Map.entry("var", TokenType.VAR),
+        Map.entry("init", TokenType.INIT),
+        Map.entry("return", TokenType.RETURN),
+        Map.entry("integer", TokenType.INTEGER),
+        Map.entry("real", TokenType.REAL),
+        Map.entry("if", TokenType.IF),
+        Map.entry("else", TokenType.ELSE),
+        Map.entry("then", TokenType.THEN),
+        Map.entry("end", TokenType.END),
+        Map.entry("repeat", TokenType.REPEAT),
+        Map.entry("until", TokenType.UNTIL),
+        Map.entry("read", TokenType.READ),
+        Map.entry("write", TokenType.WRITE)
+    );
+
+    // KEYWORDS bucketed by (length, first letter): a name is compared byte by
+    // byte against at most a couple of candidates, before any String exists
+    private static final int MAX_KEYWORD = 7;
+    private static final String[][] SHAPE_NAMES = new String[(MAX_KEYWORD + 1) * 26][];
+    private static final TokenType[][] SHAPE_TYPES = new TokenType[(MAX_KEYWORD + 1) * 26][];
+
+    static {
+        for (Map.Entry<String, TokenType> entry : KEYWORDS.entrySet()) {
+            String name = entry.getKey();
+            int shape = name.length() * 26 + (name.charAt(0) - 'a');
+            int n = SHAPE_NAMES[shape] == null ? 0 : SHAPE_NAMES[shape].length;
+            String[] names = new String[n + 1];
+            TokenType[] types = new TokenType[n + 1];
+            if (n > 0) {
+                System.arraycopy(SHAPE_NAMES[shape], 0, names, 0, n);
+                System.arraycopy(SHAPE_TYPES[shape], 0, types, 0, n);
+            }
+            names[n] = name;
+            types[n] = entry.getValue();
+            SHAPE_NAMES[shape] = names;
+            SHAPE_TYPES[shape] = types;
+        }
+    }
+
+    // Identifier intern pool: open addressing over dense int ids. The bytes
+    // of id i live in names[offsets[i], offsets[i + 1])
+    private int[] slots;
+    private int[] hashes;
+    private int[] offsets;
+    private byte[] names;
+    private int idNumber;
 
     public SymbolTable() {
-        st = new HashMap<String, TokenType>();
-        ids = new HashMap<String, Integer>();
+        slots = new int[64];
+        hashes = new int[32];
+        offsets = new int[33];
+        names = new byte[256];
         idNumber = 0;
+    }
 
-        // SYMBOLS
-        st.put(";", TokenType.SEMICOLON);
-        st.put(",", TokenType.COMMA);
-        st.put("(", TokenType.OPEN_PAR);
-        st.put(")", TokenType.CLOSE_PAR);
-
-        // OPERATORS
-        st.put(":=", TokenType.ASSIGN);
-        st.put("!", TokenType.NOT);
-        st.put("=", TokenType.EQUAL);
-        st.put(">", TokenType.GREATER_THAN);
-        st.put(">=", TokenType.GREATER_EQUAL);
-        st.put("<", TokenType.LOWER_THAN);
-        st.put("<=", TokenType.LOWER_EQUAL);
-        st.put("!=", TokenType.NOT_EQUAL);
-        st.put("+", TokenType.ADD);
-        st.put("-", TokenType.SUB);
-        st.put("||", TokenType.OR);
-        st.put("*", TokenType.MUL);
-        st.put("/", TokenType.DIV);
-        st.put("&&", TokenType.AND);
-
-        // KEYWORDS
-        st.put("app", TokenType.APP);
-        st.put("var", TokenType.VAR);
-        st.put("init", TokenType.INIT);
-        st.put("return", TokenType.RETURN);
-        st.put("integer", TokenType.INTEGER);
-        st.put("real", TokenType.REAL);
-        st.put("if", TokenType.IF);
-        st.put("else", TokenType.ELSE);
-        st.put("then", TokenType.THEN);
-        st.put("end", TokenType.END);
-        st.put("repeat", TokenType.REPEAT);
-        st.put("until", TokenType.UNTIL);
-        st.put("read", TokenType.READ);
-        st.put("write", TokenType.WRITE);
+    // Keyword spelled by source[start, start + length), or null for an identifier
+    public static TokenType keyword(Source source, int start, int length) {
+        if (length > MAX_KEYWORD) {
+            return null;
+        }
+        int first = source.byteAt(start) - 'a';
+        if (first < 0 || first >= 26) {
+            return null;
+        }
+        int shape = length * 26 + first;
+        String[] names = SHAPE_NAMES[shape];
+        if (names == null) {
+            return null;
+        }
+        for (int k = 0; k < names.length; k++) {
+            String name = names[k];
+            int i = 1;
+            while (i < length && name.charAt(i) == source.byteAt(start + i)) {
+                i++;
+            }
+            if (i == length) {
+                return SHAPE_TYPES[shape][k];
+            }
+        }
+        return null;
+    }
+
+    // Symbols, operators and keywords can never name a variable
+    public static boolean isReserved(TokenType type) {
+        return type.compareTo(TokenType.COMMA) >= 0 && type.compareTo(TokenType.READ) <= 0;
     }
 
-    public boolean contains(String token) {
-        return st.containsKey(token);
+    public int size() {
+        return idNumber;
     }
 
-    public TokenType find(String token) {
-        if (this.contains(token)){
-            return st.get(token);
-        } else {
-            this.addId(token);
-            return TokenType.NAME;
+    public String name(int id) {
+        return new String(names, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    // Id of the identifier spelled by source[start, start + length), added on first sight
+    public int intern(Source source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.byteAt(start + i);
+        }
+
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && sameName(id, source, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = addId(source, start, length, hash);
+        slots[slot] = id + 1;
+        if (idNumber * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    // Id in this table of identifier id of another table
+    int intern(SymbolTable other, int id) {
+        return intern(new ArraySource(other.names), other.offsets[id], other.offsets[id + 1] - other.offsets[id]);
+    }
+
+    private boolean sameName(int id, Source source, int start, int length) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((names[offset + i] & 0xFF) != source.byteAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addId(Source source, int start, int length, int hash) {
+        if (idNumber == hashes.length) {
+            hashes = Arrays.copyOf(hashes, idNumber * 2);
+            offsets = Arrays.copyOf(offsets, idNumber * 2 + 1);
+        }
+        int offset = offsets[idNumber];
+        if (offset + length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, offset + length));
+        }
+        for (int i = 0; i < length; i++) {
+            names[offset + i] = (byte) source.byteAt(start + i);
         }
+        hashes[idNumber] = hash;
+        offsets[idNumber + 1] = offset + length;
+        return idNumber++;
     }
 
-    private void addId(String token) {
-        if (!ids.containsKey(token)) {
-            ids.put(token, idNumber);
-            idNumber++;
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < idNumber; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
         }
     }
 
     public void printSymbolTable() {
         System.out.println("Identifiers:");
-        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
-            System.out.println(entry.getKey() + " -> " + entry.getValue());
+        for (int id = 0; id < idNumber; id++) {
+            System.out.println(name(id) + " -> " + id);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package lexical;
+
+import java.util.Arrays;
+
+// Struct-of-arrays token stream: one slot per token across parallel int
+// arrays, so a whole file can be lexed once and walked by index.
+public class TokenBuffer {
+
+    public static final int BYTES_PER_TOKEN = 5 * Integer.BYTES;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Source source;
+    private final SymbolTable st;
+
+    private int[] type;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    private int[] id;
+    private int size;
+
+    public TokenBuffer(LexicalAnalysis lex) {
+        this(lex.getSource(), lex.getSt(), 256);
+    }
+
+    TokenBuffer(Source source, SymbolTable st, int capacity) {
+        this.source = source;
+        this.st = st;
+        this.type = new int[capacity];
+        this.start = new int[capacity];
+        this.length = new int[capacity];
+        this.line = new int[capacity];
+        this.id = new int[capacity];
+        this.size = 0;
+    }
+
+    // Lexes the whole input, END_OF_FILE included
+    public static TokenBuffer lexAll(LexicalAnalysis lex) {
+        TokenBuffer tokens = new TokenBuffer(lex.getSource(), lex.getSt(), Math.max(256, lex.getSource().length() / 8));
+        TokenType type;
+        do {
+            type = tokens.add(lex);
+        } while (type != TokenType.END_OF_FILE);
+        return tokens;
+    }
+
+    // Scans one more token from lex and appends it
+    public TokenType add(LexicalAnalysis lex) {
+        TokenType t = lex.scan();
+        if (size == type.length) {
+            grow();
+        }
+        type[size] = t.ordinal();
+        start[size] = lex.getTokenStart();
+        length[size] = lex.getTokenLength();
+        line[size] = lex.getLine();
+        id[size] = lex.getTokenId();
+        size++;
+        return t;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    // Appends the first count tokens of other, shifting lines by lineOffset and
+    // translating identifier ids through idMap
+    void append(TokenBuffer other, int count, int lineOffset, int[] idMap) {
+        while (size + count > type.length) {
+            grow();
+        }
+        System.arraycopy(other.type, 0, type, size, count);
+        System.arraycopy(other.start, 0, start, size, count);
+        System.arraycopy(other.length, 0, length, size, count);
+        for (int i = 0; i < count; i++) {
+            line[size + i] = other.line[i] + lineOffset;
+            int otherId = other.id[i];
+            id[size + i] = otherId < 0 ? -1 : idMap[otherId];
+        }
+        size += count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public SymbolTable getSt() {
+        return st;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[type[i]];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    // Line the lexer was on once token i was read
+    public int line(int i) {
+        return line[i];
+    }
+
+    // Identifier id of a NAME token, -1 otherwise
+    public int id(int i) {
+        return id[i];
+    }
+
+    public String token(int i) {
+        return source.text(start[i], length[i]);
+    }
+
+    private void grow() {
+        int capacity = type.length * 2;
+        type = Arrays.copyOf(type, capacity);
+        start = Arrays.copyOf(start, capacity);
+        length = Arrays.copyOf(length, capacity);
+        line = Arrays.copyOf(line, capacity);
+        id = Arrays.copyOf(id, capacity);
+    }
+}
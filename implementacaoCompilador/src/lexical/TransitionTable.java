@@ -0,0 +1,192 @@
+package lexical;
+
+// DFA driving LexicalAnalysis.nextToken(). A table entry is either the next
+// state (>= 0) or an accept action: -1 - (type.ordinal() << 1 | UNGET).
+final class TransitionTable {
+
+    // Character classes
+    static final int OTHER = 0;
+    static final int BLANK = 1;
+    static final int NEWLINE = 2;
+    static final int LETTER = 3;
+    static final int DIGIT = 4;
+    static final int DOT = 5;
+    static final int LT = 6;
+    static final int GT = 7;
+    static final int BANG = 8;
+    static final int EQ = 9;
+    static final int COLON = 10;
+    static final int PIPE = 11;
+    static final int AMP = 12;
+    static final int PERCENT = 13;
+    static final int LBRACE = 14;
+    static final int RBRACE = 15;
+    static final int SEMICOLON = 16;
+    static final int COMMA = 17;
+    static final int PLUS = 18;
+    static final int MINUS = 19;
+    static final int STAR = 20;
+    static final int SLASH = 21;
+    static final int LPAR = 22;
+    static final int RPAR = 23;
+    static final int EOF = 24;
+    static final int CLASSES = 25;
+
+    // States
+    static final int START = 0;
+    static final int NAME = 1;
+    static final int INT = 2;
+    static final int FRACTION = 3;
+    static final int REAL = 4;
+    static final int LOWER = 5;
+    static final int GREATER = 6;
+    static final int NOT = 7;
+    static final int COLON_1 = 8;
+    static final int PIPE_1 = 9;
+    static final int AMP_1 = 10;
+    static final int COMMENT = 11;
+    static final int TEXT = 12;
+    static final int STATES = 13;
+
+    static final int UNGET = 1;
+
+    static final byte[] CLASS = new byte[128];
+    static final short[] NEXT = new short[STATES * CLASSES];
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            CLASS[c] = LETTER;
+        }
+        for (int c = 'A'; c <= 'Z'; c++) {
+            CLASS[c] = LETTER;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            CLASS[c] = DIGIT;
+        }
+        CLASS['_'] = LETTER;
+        CLASS[' '] = BLANK;
+        CLASS['\t'] = BLANK;
+        CLASS['\r'] = BLANK;
+        CLASS['\n'] = NEWLINE;
+        CLASS['.'] = DOT;
+        CLASS['<'] = LT;
+        CLASS['>'] = GT;
+        CLASS['!'] = BANG;
+        CLASS['='] = EQ;
+        CLASS[':'] = COLON;
+        CLASS['|'] = PIPE;
+        CLASS['&'] = AMP;
+        CLASS['%'] = PERCENT;
+        CLASS['{'] = LBRACE;
+        CLASS['}'] = RBRACE;
+        CLASS[';'] = SEMICOLON;
+        CLASS[','] = COMMA;
+        CLASS['+'] = PLUS;
+        CLASS['-'] = MINUS;
+        CLASS['*'] = STAR;
+        CLASS['/'] = SLASH;
+        CLASS['('] = LPAR;
+        CLASS[')'] = RPAR;
+
+        otherwise(START, accept(TokenType.INVALID_TOKEN, 0));
+        on(START, BLANK, START);
+        on(START, NEWLINE, START);
+        on(START, LETTER, NAME);
+        on(START, DIGIT, INT);
+        on(START, LT, LOWER);
+        on(START, GT, GREATER);
+        on(START, BANG, NOT);
+        on(START, COLON, COLON_1);
+        on(START, PIPE, PIPE_1);
+        on(START, AMP, AMP_1);
+        on(START, PERCENT, COMMENT);
+        on(START, LBRACE, TEXT);
+        on(START, EQ, accept(TokenType.EQUAL, 0));
+        on(START, SEMICOLON, accept(TokenType.SEMICOLON, 0));
+        on(START, COMMA, accept(TokenType.COMMA, 0));
+        on(START, PLUS, accept(TokenType.ADD, 0));
+        on(START, MINUS, accept(TokenType.SUB, 0));
+        on(START, STAR, accept(TokenType.MUL, 0));
+        on(START, SLASH, accept(TokenType.DIV, 0));
+        on(START, LPAR, accept(TokenType.OPEN_PAR, 0));
+        on(START, RPAR, accept(TokenType.CLOSE_PAR, 0));
+        on(START, EOF, accept(TokenType.END_OF_FILE, 0));
+
+        otherwise(NAME, accept(TokenType.NAME, UNGET));
+        on(NAME, LETTER, NAME);
+        on(NAME, DIGIT, NAME);
+
+        otherwise(INT, accept(TokenType.INT_NUMBER, UNGET));
+        on(INT, DIGIT, INT);
+        on(INT, DOT, FRACTION);
+
+        otherwise(FRACTION, accept(TokenType.INVALID_TOKEN, 0));
+        on(FRACTION, DIGIT, REAL);
+
+        otherwise(REAL, accept(TokenType.REAL_NUMBER, UNGET));
+        on(REAL, DIGIT, REAL);
+
+        otherwise(LOWER, accept(TokenType.LOWER_THAN, UNGET));
+        on(LOWER, EQ, accept(TokenType.LOWER_EQUAL, 0));
+
+        otherwise(GREATER, accept(TokenType.GREATER_THAN, UNGET));
+        on(GREATER, EQ, accept(TokenType.GREATER_EQUAL, 0));
+
+        otherwise(NOT, accept(TokenType.NOT, UNGET));
+        on(NOT, EQ, accept(TokenType.NOT_EQUAL, 0));
+
+        otherwise(COLON_1, accept(TokenType.INVALID_TOKEN, 0));
+        on(COLON_1, EQ, accept(TokenType.ASSIGN, 0));
+
+        otherwise(PIPE_1, accept(TokenType.INVALID_TOKEN, 0));
+        on(PIPE_1, PIPE, accept(TokenType.OR, 0));
+
+        otherwise(AMP_1, accept(TokenType.INVALID_TOKEN, 0));
+        on(AMP_1, AMP, accept(TokenType.AND, 0));
+
+        otherwise(COMMENT, COMMENT);
+        on(COMMENT, NEWLINE, START);
+        on(COMMENT, EOF, accept(TokenType.END_OF_FILE, 0));
+
+        otherwise(TEXT, TEXT);
+        on(TEXT, RBRACE, accept(TokenType.TEXT, 0));
+        on(TEXT, EOF, accept(TokenType.UNEXPECTED_EOF, 0));
+    }
+
+    private TransitionTable() {
+    }
+
+    static int classOf(int c) {
+        if (c < 0) {
+            return EOF;
+        }
+        if (c < 128) {
+            return CLASS[c];
+        }
+        return Character.isLetter(c) ? LETTER : OTHER;
+    }
+
+    static TokenType type(int action) {
+        return TYPES[(-1 - action) >> 1];
+    }
+
+    static boolean unget(int action) {
+        return ((-1 - action) & UNGET) != 0;
+    }
+
+    private static int accept(TokenType type, int flags) {
+        return -1 - (type.ordinal() << 1 | flags);
+    }
+
+    private static void on(int state, int cls, int next) {
+        NEXT[state * CLASSES + cls] = (short) next;
+    }
+
+    private static void otherwise(int state, int next) {
+        for (int cls = 0; cls < CLASSES; cls++) {
+            on(state, cls, next);
+        }
+    }
+}
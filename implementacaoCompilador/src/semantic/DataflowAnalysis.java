@@ -0,0 +1,517 @@
+package semantic;
+
+import java.util.Arrays;
+
+import diagnostic.DiagnosticCode;
+import diagnostic.DiagnosticSink;
+import lexical.TokenBuffer;
+import syntatic.Ast;
+import syntatic.NodeKind;
+
+// Definite assignment and liveness over the statement structure, for a tree
+// the parser built without errors.
+//
+// Variables get dense slots in declaration order and the solved sets are
+// long[] bitsets over them, one row per basic block. A block is a straight
+// run of statements, ended by a condition or the start of a loop. Each
+// block's own reads and writes are kept as slot lists, so they cost what
+// the program text costs. Both problems are solved with a worklist:
+// definite assignment forward, meeting with intersection, and liveness
+// backward, meeting with union
+public class DataflowAnalysis {
+
+    private final Ast ast;
+    private final TokenBuffer tokens;
+    private final DiagnosticSink sink;
+
+    // Slot per SymbolTable id, -1 for names that are not variables
+    private final int[] slotOf;
+    private int[] declOf = new int[16];
+    private boolean[] used = new boolean[16];
+    private int slots;
+    private int words;
+
+    // items[itemStart[b]..itemStart[b + 1]) are the statements and
+    // conditions of block b in order; a block has up to two successors
+    private int[] items = new int[64];
+    private int itemCount;
+    private int[] itemStart = new int[17];
+    private int[] succ = new int[32];
+    private int blocks;
+    private int[] predStart;
+    private int[] preds;
+
+    // Per block: the slots it reads before writing them, and those it writes
+    private int[] useStart;
+    private int[] useList;
+    private int[] defStart;
+    private int[] defList;
+
+    // Solved sets, words longs per block
+    private long[] assignedIn;
+    private long[] liveOut;
+    // Per item: an assignment whose value is never read
+    private boolean[] dead;
+
+    // Open IF and REPEAT nodes while building; for an IF, first is the block
+    // with its condition and second the end of its then part (-1 before the
+    // else), for a REPEAT first is the head of the loop
+    private int[] control = new int[16];
+    private int[] first = new int[16];
+    private int[] second = new int[16];
+
+    // Scratch for walking expressions and collecting their variables
+    private int[] stack = new int[32];
+    private int[] variables = new int[32];
+
+    public DataflowAnalysis(Ast ast, TokenBuffer tokens, DiagnosticSink sink) {
+        this.ast = ast;
+        this.tokens = tokens;
+        this.sink = sink;
+        this.slotOf = new int[tokens.getSt().size()];
+        Arrays.fill(slotOf, -1);
+    }
+
+    public void run() {
+        if (ast.root() == Ast.NONE) {
+            return;
+        }
+        build();
+        words = (slots + 63) >>> 6;
+        local();
+        predecessors();
+        // Only one matrix at a time: liveness is reduced to the dead writes
+        // before definite assignment is solved
+        solveLive();
+        markDead();
+        liveOut = null;
+        solveAssigned();
+        report();
+    }
+
+    private void build() {
+        int current = newBlock();
+        int open = 0;
+        Ast.Cursor cursor = ast.cursor();
+        int node;
+        while ((node = cursor.next()) != Ast.NONE) {
+            NodeKind kind = ast.kind(node);
+            if (!cursor.entering()) {
+                if (kind == NodeKind.IF) {
+                    open--;
+                    int join = newBlock();
+                    edge(second[open] == -1 ? first[open] : second[open], join);
+                    edge(current, join);
+                    current = join;
+                } else if (kind == NodeKind.REPEAT) {
+                    open--;
+                    int exit = newBlock();
+                    edge(current, first[open]);
+                    edge(current, exit);
+                    current = exit;
+                }
+                continue;
+            }
+
+            switch (kind) {
+                case PROGRAM:
+                    break;
+                case DECL:
+                    declare(node);
+                    break;
+                case BLOCK:
+                    // A then or else part starts a block after the condition
+                    if (open > 0 && ast.kind(control[open - 1]) == NodeKind.IF) {
+                        int top = open - 1;
+                        if (node == ast.nextSibling(ast.firstChild(control[top]))) {
+                            first[top] = current;
+                        } else {
+                            second[top] = current;
+                        }
+                        int start = newBlock();
+                        edge(first[top], start);
+                        current = start;
+                    }
+                    break;
+                case IF:
+                case REPEAT:
+                    if (open == control.length) {
+                        control = Arrays.copyOf(control, open * 2);
+                        first = Arrays.copyOf(first, open * 2);
+                        second = Arrays.copyOf(second, open * 2);
+                    }
+                    control[open] = node;
+                    second[open] = -1;
+                    if (kind == NodeKind.REPEAT) {
+                        int head = newBlock();
+                        edge(current, head);
+                        current = head;
+                        first[open] = head;
+                    }
+                    open++;
+                    break;
+                default:
+                    // A statement, or the condition of an IF or REPEAT
+                    addItem(node);
+                    cursor.skip();
+                    break;
+            }
+        }
+        itemStart[blocks] = itemCount;
+    }
+
+    private void declare(int decl) {
+        int id = tokens.id(ast.token(decl));
+        if (slots == declOf.length) {
+            declOf = Arrays.copyOf(declOf, slots * 2);
+            used = Arrays.copyOf(used, slots * 2);
+        }
+        declOf[slots] = decl;
+        slotOf[id] = slots++;
+    }
+
+    private int newBlock() {
+        if (blocks + 1 == itemStart.length) {
+            itemStart = Arrays.copyOf(itemStart, blocks * 2 + 1);
+            succ = Arrays.copyOf(succ, blocks * 4);
+        }
+        itemStart[blocks] = itemCount;
+        succ[2 * blocks] = -1;
+        succ[2 * blocks + 1] = -1;
+        return blocks++;
+    }
+
+    private void edge(int from, int to) {
+        succ[succ[2 * from] == -1 ? 2 * from : 2 * from + 1] = to;
+    }
+
+    private void addItem(int node) {
+        if (itemCount == items.length) {
+            items = Arrays.copyOf(items, itemCount * 2);
+        }
+        items[itemCount++] = node;
+    }
+
+    // Slot written by a statement, -1 if none
+    private int target(int item) {
+        NodeKind kind = ast.kind(item);
+        if (kind == NodeKind.ASSIGN || kind == NodeKind.READ) {
+            return slotOf[tokens.id(ast.token(item))];
+        }
+        return -1;
+    }
+
+    // Expression read by an item, or NONE
+    private int expression(int item) {
+        switch (ast.kind(item)) {
+            case ASSIGN:
+                return ast.firstChild(item);
+            case WRITE:
+                int child = ast.firstChild(item);
+                return ast.kind(child) == NodeKind.TEXT ? Ast.NONE : child;
+            case READ:
+                return Ast.NONE;
+            default:
+                return item;
+        }
+    }
+
+    // Collects the VARIABLE nodes of an expression into variables, left to
+    // right, and returns how many there are
+    private int collect(int expression) {
+        if (expression == Ast.NONE) {
+            return 0;
+        }
+        int count = 0;
+        int sp = 0;
+        stack[sp++] = expression;
+        while (sp > 0) {
+            int node = stack[--sp];
+            if (ast.kind(node) == NodeKind.VARIABLE && slotOf[tokens.id(ast.token(node))] >= 0) {
+                if (count == variables.length) {
+                    variables = Arrays.copyOf(variables, count * 2);
+                }
+                variables[count++] = node;
+            }
+            if (sp + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (node != expression && ast.nextSibling(node) != Ast.NONE) {
+                stack[sp++] = ast.nextSibling(node);
+            }
+            if (ast.firstChild(node) != Ast.NONE) {
+                stack[sp++] = ast.firstChild(node);
+            }
+        }
+        return count;
+    }
+
+    private int slot(int variable) {
+        return slotOf[tokens.id(ast.token(variable))];
+    }
+
+    // The use and def lists of every block. A read is a use of the block
+    // unless the block wrote the slot before it
+    private void local() {
+        long[] written = new long[words];
+        long[] listed = new long[words];
+        IntList uses = new IntList(itemCount);
+        IntList defs = new IntList(itemCount);
+        useStart = new int[blocks + 1];
+        defStart = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            useStart[b] = uses.size;
+            defStart[b] = defs.size;
+            for (int i = itemStart[b]; i < itemStart[b + 1]; i++) {
+                int item = items[i];
+                int count = collect(expression(item));
+                for (int v = 0; v < count; v++) {
+                    int slot = slot(variables[v]);
+                    used[slot] = true;
+                    if (!get(written, 0, slot) && !get(listed, 0, slot)) {
+                        set(listed, 0, slot);
+                        uses.add(slot);
+                    }
+                }
+                int target = target(item);
+                if (target >= 0 && !get(written, 0, target)) {
+                    set(written, 0, target);
+                    defs.add(target);
+                }
+            }
+            // Clear only what this block touched
+            for (int u = useStart[b]; u < uses.size; u++) {
+                clear(listed, 0, uses.data[u]);
+            }
+            for (int d = defStart[b]; d < defs.size; d++) {
+                clear(written, 0, defs.data[d]);
+            }
+        }
+        useStart[blocks] = uses.size;
+        defStart[blocks] = defs.size;
+        useList = uses.data;
+        defList = defs.data;
+    }
+
+    private void predecessors() {
+        predStart = new int[blocks + 1];
+        for (int e = 0; e < 2 * blocks; e++) {
+            if (succ[e] >= 0) {
+                predStart[succ[e] + 1]++;
+            }
+        }
+        for (int b = 0; b < blocks; b++) {
+            predStart[b + 1] += predStart[b];
+        }
+        preds = new int[predStart[blocks]];
+        int[] fill = Arrays.copyOf(predStart, blocks);
+        for (int e = 0; e < 2 * blocks; e++) {
+            if (succ[e] >= 0) {
+                preds[fill[succ[e]]++] = e / 2;
+            }
+        }
+    }
+
+    // Forward: in(b) is the intersection of out(p) over the predecessors,
+    // out(b) = in(b) + defs(b); the entry starts with nothing assigned
+    private void solveAssigned() {
+        assignedIn = new long[blocks * words];
+        Arrays.fill(assignedIn, words, assignedIn.length, -1L);
+        long[] meet = new long[words];
+        long[] out = new long[words];
+        Worklist work = new Worklist(blocks);
+        for (int b = 1; b < blocks; b++) {
+            work.add(b);
+        }
+        while (!work.isEmpty()) {
+            int b = work.remove();
+            Arrays.fill(meet, -1L);
+            for (int p = predStart[b]; p < predStart[b + 1]; p++) {
+                int pred = preds[p];
+                System.arraycopy(assignedIn, pred * words, out, 0, words);
+                for (int d = defStart[pred]; d < defStart[pred + 1]; d++) {
+                    set(out, 0, defList[d]);
+                }
+                for (int w = 0; w < words; w++) {
+                    meet[w] &= out[w];
+                }
+            }
+            if (update(assignedIn, b, meet)) {
+                for (int s = 2 * b; s < 2 * b + 2; s++) {
+                    if (succ[s] >= 0) {
+                        work.add(succ[s]);
+                    }
+                }
+            }
+        }
+    }
+
+    // Backward: out(b) is the union of in(s) over the successors,
+    // in(b) = uses(b) + (out(b) - defs(b))
+    private void solveLive() {
+        liveOut = new long[blocks * words];
+        long[] meet = new long[words];
+        long[] in = new long[words];
+        Worklist work = new Worklist(blocks);
+        for (int b = blocks - 1; b >= 0; b--) {
+            work.add(b);
+        }
+        while (!work.isEmpty()) {
+            int b = work.remove();
+            Arrays.fill(meet, 0L);
+            for (int s = 2 * b; s < 2 * b + 2; s++) {
+                int next = succ[s];
+                if (next < 0) {
+                    continue;
+                }
+                System.arraycopy(liveOut, next * words, in, 0, words);
+                for (int d = defStart[next]; d < defStart[next + 1]; d++) {
+                    clear(in, 0, defList[d]);
+                }
+                for (int u = useStart[next]; u < useStart[next + 1]; u++) {
+                    set(in, 0, useList[u]);
+                }
+                for (int w = 0; w < words; w++) {
+                    meet[w] |= in[w];
+                }
+            }
+            if (update(liveOut, b, meet)) {
+                for (int p = predStart[b]; p < predStart[b + 1]; p++) {
+                    work.add(preds[p]);
+                }
+            }
+        }
+    }
+
+    // Copies value into row b of sets; false if it was already there
+    private boolean update(long[] sets, int b, long[] value) {
+        int base = b * words;
+        boolean changed = false;
+        for (int w = 0; w < words; w++) {
+            if (sets[base + w] != value[w]) {
+                sets[base + w] = value[w];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Walks each block backwards from its live-out set
+    private void markDead() {
+        long[] live = new long[words];
+        dead = new boolean[itemCount];
+        for (int b = 0; b < blocks; b++) {
+            System.arraycopy(liveOut, b * words, live, 0, words);
+            for (int i = itemStart[b + 1] - 1; i >= itemStart[b]; i--) {
+                int item = items[i];
+                int target = target(item);
+                if (target >= 0) {
+                    dead[i] = ast.kind(item) == NodeKind.ASSIGN && used[target] && !get(live, 0, target);
+                    clear(live, 0, target);
+                }
+                int count = collect(expression(item));
+                for (int v = 0; v < count; v++) {
+                    set(live, 0, slot(variables[v]));
+                }
+            }
+        }
+    }
+
+    // In source order. Only the first read of a variable without a value is
+    // reported, whatever the path
+    private void report() {
+        for (int slot = 0; slot < slots; slot++) {
+            if (!used[slot]) {
+                report(DiagnosticCode.UNUSED_VARIABLE, ast.token(declOf[slot]));
+            }
+        }
+
+        long[] assigned = new long[words];
+        long[] reported = new long[words];
+        for (int b = 0; b < blocks; b++) {
+            System.arraycopy(assignedIn, b * words, assigned, 0, words);
+            for (int i = itemStart[b]; i < itemStart[b + 1]; i++) {
+                int item = items[i];
+                int count = collect(expression(item));
+                for (int v = 0; v < count; v++) {
+                    int slot = slot(variables[v]);
+                    if (!get(assigned, 0, slot) && !get(reported, 0, slot)) {
+                        report(DiagnosticCode.NOT_ASSIGNED, ast.token(variables[v]));
+                        set(reported, 0, slot);
+                    }
+                }
+                int target = target(item);
+                if (target >= 0) {
+                    if (dead[i]) {
+                        report(DiagnosticCode.UNUSED_VALUE, ast.token(item));
+                    }
+                    set(assigned, 0, target);
+                }
+            }
+        }
+    }
+
+    private void report(DiagnosticCode code, int at) {
+        sink.report(code, tokens.line(at), tokens.start(at), tokens.length(at));
+    }
+
+    private static boolean get(long[] set, int base, int slot) {
+        return (set[base + (slot >>> 6)] & 1L << slot) != 0;
+    }
+
+    private static void set(long[] set, int base, int slot) {
+        set[base + (slot >>> 6)] |= 1L << slot;
+    }
+
+    private static void clear(long[] set, int base, int slot) {
+        set[base + (slot >>> 6)] &= ~(1L << slot);
+    }
+
+    private static final class IntList {
+        int[] data;
+        int size;
+
+        IntList(int capacity) {
+            data = new int[Math.max(16, capacity)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    // FIFO of blocks, each queued at most once
+    private static final class Worklist {
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int size;
+
+        Worklist(int capacity) {
+            queue = new int[capacity];
+            queued = new boolean[capacity];
+        }
+
+        void add(int b) {
+            if (!queued[b]) {
+                queued[b] = true;
+                queue[(head + size++) % queue.length] = b;
+            }
+        }
+
+        int remove() {
+            int b = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            queued[b] = false;
+            return b;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
\ No newline at end of file
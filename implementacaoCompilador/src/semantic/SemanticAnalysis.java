@@ -1,116 +1,163 @@
 package semantic;
 
 import java.util.Arrays;
-import java.util.HashMap;
+
+import diagnostic.DiagnosticCode;
+import diagnostic.DiagnosticSink;
 import lexical.SymbolTable;
+import lexical.TokenBuffer;
 import lexical.TokenType;
 
+// Every check takes the index in tokens of the token to blame. A failed
+// check reports to the sink and returns false, or null for the checks that
+// produce a type. The checks the parser runs once it has moved past the
+// construct also take at, the token it is on: the diagnostic has its line,
+// as the original compiler reported it, and the span of the token to blame
 public class SemanticAnalysis {
     private final SymbolTable st;
-    private final HashMap<String, Var> vars;
+    private final TokenBuffer tokens;
+    private final DiagnosticSink sink;
+    // Declared type per identifier id from the SymbolTable; null if undeclared
+    private IdType[] vars;
+    // Checks run so far, for CompileStats
+    private int checks;
+
+    public SemanticAnalysis(TokenBuffer tokens, DiagnosticSink sink) {
+        this.st = tokens.getSt();
+        this.tokens = tokens;
+        this.sink = sink;
+        this.vars = new IdType[Math.max(16, st.size())];
+    }
 
-    public SemanticAnalysis() {
-        this.st = new SymbolTable();
-        this.vars = new HashMap<>();
+    private boolean hasDeclartion(int id) {
+        return id < vars.length && vars[id] != null;
     }
 
-    private boolean hasDeclartion(String token) {
-        return vars.containsKey(token);
+    private void report(DiagnosticCode code, int at) {
+        report(code, at, at);
     }
 
-    private boolean isReserved(String token) {
-        return st.contains(token);
+    private void report(DiagnosticCode code, int at, int token) {
+        sink.report(code, tokens.line(at), tokens.start(token), tokens.length(token));
     }
 
-    public void isBoolean(IdType type) throws SemanticException {
-        if (!type.equals(IdType.BOOLEAN)) {
-            throw new SemanticException("O expressão condicional precisa ser um booleano");
-        }
+    public int getChecks() {
+        return checks;
     }
 
-    public void checkDeclaration(String token) throws SemanticException {
-        if (!hasDeclartion(token)) {
-            throw new SemanticException("Variável não declarada");
+    public boolean isBoolean(IdType type, int at, int token) {
+        checks++;
+        if (type != IdType.BOOLEAN) {
+            report(DiagnosticCode.NOT_BOOLEAN, at, token);
+            return false;
         }
+        return true;
     }
 
-    public void checkHasAssign(String token, IdType type) throws SemanticException {
-        Var variable = getVar(token);
-        if (variable.type.equals(IdType.APP)) {
-            throw new SemanticException("O nome da aplicação não é uma variável");
-        }
-        if (variable.type.equals(IdType.REAL_NUMBER) && type.equals(IdType.INT_NUMBER)) {
-            return;
-        }
-        if (!variable.type.equals(type)) {
-            throw new SemanticException("Tipo da variável não corresponde ao tipo da expressão");
-        }
+    public boolean checkDeclaration(int id, int at) {
+        return checkDeclaration(id, at, at);
     }
 
-    public IdType checkOp(IdType leftType, IdType rightType, TokenType op) throws SemanticException {
-        if (Arrays.asList(TokenType.OR, TokenType.AND, TokenType.NOT_EQUAL, TokenType.GREATER_EQUAL, TokenType.LOWER_EQUAL, TokenType.GREATER_THAN, TokenType.LOWER_THAN).contains(op)) {
-            if (leftType.equals(IdType.BOOLEAN) && rightType.equals(IdType.BOOLEAN)) {
-                return IdType.BOOLEAN;
-            } else {
-                throw new SemanticException("Tipo da variável não corresponde ao tipo da expressão");
-            }
-        } else if (Arrays.asList(TokenType.ADD, TokenType.SUB, TokenType.MUL, TokenType.DIV).contains(op)) {
-            if (leftType.equals(IdType.APP) || rightType.equals(IdType.APP)) {
-                throw new SemanticException("O nome da aplicação não pode ser utilizado em uma operação aritmética");
-            }
-            if (op == TokenType.DIV) {
-                return IdType.REAL_NUMBER;
-            }
-            if (leftType.equals(IdType.REAL_NUMBER) || rightType.equals(IdType.REAL_NUMBER)) {
-                return IdType.REAL_NUMBER;
-            }
-            return IdType.INT_NUMBER;
+    public boolean checkDeclaration(int id, int at, int token) {
+        checks++;
+        if (!hasDeclartion(id)) {
+            report(DiagnosticCode.NOT_DECLARED, at, token);
+            return false;
         }
-        throw new SemanticException("Operação inválida");
+        return true;
     }
 
-    public IdType checkCompOp(IdType type1, IdType type2) throws SemanticException {
-        if (type1.equals(IdType.APP) || type2.equals(IdType.APP)) {
-            throw new SemanticException("O nome da aplicação não pode ser utilizado em uma operação de comparação");
+    // A read needs a declared variable to store into
+    public boolean checkReadable(int id, int at) {
+        if (!checkDeclaration(id, at)) {
+            return false;
         }
-        return IdType.BOOLEAN;
+        if (vars[id] == IdType.APP) {
+            report(DiagnosticCode.APP_NOT_VARIABLE, at);
+            return false;
+        }
+        return true;
     }
 
-    public IdType checkBooleanOp(IdType type1, IdType type2) throws SemanticException {
-        if (type1.equals(IdType.APP) || type2.equals(IdType.APP)) {
-            throw new SemanticException("O nome da aplicação não pode ser utilizado em uma operação lógica");
+    // The variable must already be declared (see checkDeclaration)
+    public boolean checkHasAssign(int id, IdType type, int at, int token) {
+        checks++;
+        IdType variable = vars[id];
+        if (variable == IdType.APP) {
+            report(DiagnosticCode.APP_NOT_VARIABLE, at, token);
+            return false;
+        }
+        if (variable == IdType.REAL_NUMBER && type == IdType.INT_NUMBER) {
+            return true;
         }
-        if (type1.equals(IdType.BOOLEAN) && type2.equals(IdType.BOOLEAN)) {
-            return IdType.BOOLEAN;
+        if (variable != type) {
+            report(DiagnosticCode.TYPE_MISMATCH, at, token);
+            return false;
         }
-        throw new SemanticException("Tipo da variável não corresponde ao tipo da expressão");
+        return true;
     }
 
-    public void checkUnaryOp(IdType type) throws SemanticException {
-        if (type.equals(IdType.APP)) {
-            throw new SemanticException("O nome da aplicação não pode ser utilizado em uma operação aritmética");
-        }
-        if (!type.equals(IdType.INT_NUMBER) && !type.equals(IdType.REAL_NUMBER)) {
-            throw new SemanticException("Tipo da variável não corresponde ao tipo da expressão");
+    // Any operator; relational, logic and unary ones have the shortcuts below
+    public IdType checkOp(IdType leftType, IdType rightType, TokenType op, int at, int token) {
+        checks++;
+        return outcome(TypeRules.binary(op, leftType, rightType), at, token);
+    }
+
+    // All comparisons type alike
+    public IdType checkCompOp(IdType type1, IdType type2, int at, int token) {
+        return checkOp(type1, type2, TokenType.EQUAL, at, token);
+    }
+
+    public IdType checkBooleanOp(IdType type1, IdType type2, int at, int token) {
+        return checkOp(type1, type2, TokenType.AND, at, token);
+    }
+
+    public IdType checkUnaryOp(IdType type, TokenType op, int at, int token) {
+        checks++;
+        return outcome(TypeRules.unary(op, type), at, token);
+    }
+
+    private IdType outcome(int outcome, int at, int token) {
+        if (TypeRules.isError(outcome)) {
+            report(TypeRules.error(outcome), at, token);
+            return null;
         }
+        return TypeRules.type(outcome);
     }
 
-    public void addVar(String token, IdType type) throws SemanticException {
-        if (isReserved(token)) {
-            throw new SemanticException("O nome da variável não pode ser uma palavra reservada");
+    // Declares the identifier under the current token; any other token is
+    // left for the parser to reject, unless it is a reserved word or symbol
+    public void addVar(TokenType token, int id, IdType type, int at) {
+        checks++;
+        if (token != TokenType.NAME) {
+            if (SymbolTable.isReserved(token)) {
+                report(DiagnosticCode.RESERVED_NAME, at);
+            }
+            return;
         }
-        if (hasDeclartion(token)) {
-            throw new SemanticException("A variável já foi declarada");
+        if (hasDeclartion(id)) {
+            report(DiagnosticCode.ALREADY_DECLARED, at);
+            return;
         }
 
-        vars.put(token, new Var(token, type));
+        if (id >= vars.length) {
+            vars = Arrays.copyOf(vars, Math.max(vars.length * 2, st.size()));
+        }
+        vars[id] = type;
+    }
+
+    // Declared type, or null without reporting anything
+    public IdType typeOf(int id) {
+        return hasDeclartion(id) ? vars[id] : null;
     }
 
-    public Var getVar(String token) throws SemanticException {
-        if (!hasDeclartion(token)) {
-            throw new SemanticException("Variável não declarada");
+    public IdType getVar(int id, int at, int token) {
+        checks++;
+        if (!hasDeclartion(id)) {
+            report(DiagnosticCode.NOT_DECLARED, at, token);
+            return null;
         }
 
-        return vars.get(token);
+        return vars[id];
     }
 }
\ No newline at end of file
@@ -1,7 +0,0 @@
-package semantic;
-
-public class SemanticException extends Exception {
-    public SemanticException(String message) {
-        super(message);
-    }
-}
\ No newline at end of file
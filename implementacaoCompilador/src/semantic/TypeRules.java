@@ -0,0 +1,151 @@
+package semantic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import diagnostic.DiagnosticCode;
+import lexical.TokenType;
+
+// The typing of every operator as data, compiled into one matrix indexed by
+// [operator][left type][right type]. A unary operator uses the extra left
+// column NONE and its operand as the right type.
+//
+// Each entry is the result type's ordinal, or -1 - the ordinal of the
+// DiagnosticCode to report. Rules are applied in order, so a later rule
+// overrides an earlier one on the cells they share
+final class TypeRules {
+
+    private static final IdType[] ID_TYPES = IdType.values();
+    private static final DiagnosticCode[] CODES = DiagnosticCode.values();
+
+    private static final int TYPES = ID_TYPES.length;
+    private static final int NONE = TYPES;
+    private static final int COLUMNS = TYPES + 1;
+
+    // Operator and type sets as bitsets over the ordinals
+    private static final long ARITHMETIC = ops(TokenType.ADD, TokenType.SUB, TokenType.MUL, TokenType.DIV);
+    private static final long RELATIONAL = ops(TokenType.EQUAL, TokenType.NOT_EQUAL, TokenType.LOWER_THAN,
+        TokenType.GREATER_THAN, TokenType.LOWER_EQUAL, TokenType.GREATER_EQUAL);
+    private static final long LOGIC = ops(TokenType.AND, TokenType.OR);
+    private static final int ANY = (1 << TYPES) - 1;
+    private static final int APP = types(IdType.APP);
+    private static final int BOOLEAN = types(IdType.BOOLEAN);
+    private static final int NUMBER = types(IdType.INT_NUMBER, IdType.REAL_NUMBER);
+    private static final int REAL = types(IdType.REAL_NUMBER);
+
+    // { operators, left types, right types, outcome }; SAME as the outcome
+    // of a unary rule gives back the operand type
+    private static final long SAME = Long.MAX_VALUE;
+    private static final List<long[]> RULES = new ArrayList<>();
+    private static final byte[] MATRIX = new byte[TokenType.values().length * COLUMNS * TYPES];
+
+    static {
+        // Arithmetic is int unless a real is involved, and / is always real
+        binary(ARITHMETIC, ANY, ANY, IdType.INT_NUMBER);
+        binary(ARITHMETIC, REAL, ANY, IdType.REAL_NUMBER);
+        binary(ARITHMETIC, ANY, REAL, IdType.REAL_NUMBER);
+        binary(ops(TokenType.DIV), ANY, ANY, IdType.REAL_NUMBER);
+        binary(ARITHMETIC, APP, ANY, DiagnosticCode.APP_IN_ARITHMETIC);
+        binary(ARITHMETIC, ANY, APP, DiagnosticCode.APP_IN_ARITHMETIC);
+
+        // Comparisons take any two values
+        binary(RELATIONAL, ANY, ANY, IdType.BOOLEAN);
+        binary(RELATIONAL, APP, ANY, DiagnosticCode.APP_IN_COMPARISON);
+        binary(RELATIONAL, ANY, APP, DiagnosticCode.APP_IN_COMPARISON);
+
+        // && and || only on booleans
+        binary(LOGIC, ANY, ANY, DiagnosticCode.TYPE_MISMATCH);
+        binary(LOGIC, BOOLEAN, BOOLEAN, IdType.BOOLEAN);
+        binary(LOGIC, APP, ANY, DiagnosticCode.APP_IN_LOGIC);
+        binary(LOGIC, ANY, APP, DiagnosticCode.APP_IN_LOGIC);
+
+        // Negation keeps the numeric type, ! needs a boolean
+        unary(ops(TokenType.SUB), ANY, DiagnosticCode.TYPE_MISMATCH);
+        unary(ops(TokenType.SUB), NUMBER);
+        unary(ops(TokenType.SUB), APP, DiagnosticCode.APP_IN_ARITHMETIC);
+        unary(ops(TokenType.NOT), ANY, DiagnosticCode.NOT_BOOLEAN);
+        unary(ops(TokenType.NOT), BOOLEAN);
+
+        build();
+    }
+
+    private TypeRules() {
+    }
+
+    static int binary(TokenType op, IdType left, IdType right) {
+        return MATRIX[(op.ordinal() * COLUMNS + left.ordinal()) * TYPES + right.ordinal()];
+    }
+
+    static int unary(TokenType op, IdType operand) {
+        return MATRIX[(op.ordinal() * COLUMNS + NONE) * TYPES + operand.ordinal()];
+    }
+
+    static boolean isError(int outcome) {
+        return outcome < 0;
+    }
+
+    static IdType type(int outcome) {
+        return ID_TYPES[outcome];
+    }
+
+    static DiagnosticCode error(int outcome) {
+        return CODES[-1 - outcome];
+    }
+
+    private static long ops(TokenType... operators) {
+        long set = 0;
+        for (TokenType op : operators) {
+            set |= 1L << op.ordinal();
+        }
+        return set;
+    }
+
+    private static int types(IdType... types) {
+        int set = 0;
+        for (IdType type : types) {
+            set |= 1 << type.ordinal();
+        }
+        return set;
+    }
+
+    private static void binary(long ops, int left, int right, IdType result) {
+        RULES.add(new long[] { ops, left, right, result.ordinal() });
+    }
+
+    private static void binary(long ops, int left, int right, DiagnosticCode error) {
+        RULES.add(new long[] { ops, left, right, -1 - error.ordinal() });
+    }
+
+    // The result is the operand's own type
+    private static void unary(long ops, int operand) {
+        RULES.add(new long[] { ops, 1 << NONE, operand, SAME });
+    }
+
+    private static void unary(long ops, int operand, DiagnosticCode error) {
+        RULES.add(new long[] { ops, 1 << NONE, operand, -1 - error.ordinal() });
+    }
+
+    // Cells no rule covers are invalid operations
+    private static void build() {
+        Arrays.fill(MATRIX, (byte) (-1 - DiagnosticCode.INVALID_OPERATION.ordinal()));
+        for (long[] rule : RULES) {
+            for (int op = 0; op < Long.SIZE; op++) {
+                if ((rule[0] & 1L << op) == 0) {
+                    continue;
+                }
+                for (int left = 0; left < COLUMNS; left++) {
+                    if ((rule[1] & 1 << left) == 0) {
+                        continue;
+                    }
+                    for (int right = 0; right < TYPES; right++) {
+                        if ((rule[2] & 1 << right) != 0) {
+                            long outcome = rule[3] == SAME ? right : rule[3];
+                            MATRIX[(op * COLUMNS + left) * TYPES + right] = (byte) outcome;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
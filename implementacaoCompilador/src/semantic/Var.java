@@ -1,11 +0,0 @@
-package semantic;
-
-public class Var {
-    public String id;
-    public IdType type;
-
-    public Var (String id, IdType type) {
-        this.id = id;
-        this.type = type;
-    }
-}
\ No newline at end of file
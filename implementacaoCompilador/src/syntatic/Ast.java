@@ -0,0 +1,181 @@
+package syntatic;
+
+import java.util.Arrays;
+
+import semantic.IdType;
+
+// Syntax tree kept as parallel arrays indexed by node: no object per node,
+// 14 bytes each. Children are a linked list through firstChild and
+// nextSibling, tokens are indexes into the parser's TokenBuffer and types
+// are IdType ordinals. After a parse with errors the tree may be partial
+public class Ast {
+
+    public static final int NONE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final IdType[] ID_TYPES = IdType.values();
+
+    private byte[] kind;
+    private byte[] type;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] token;
+    private int size;
+
+    public Ast(int capacity) {
+        capacity = Math.max(16, capacity);
+        this.kind = new byte[capacity];
+        this.type = new byte[capacity];
+        this.firstChild = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.token = new int[capacity];
+    }
+
+    // A childless node; the root is the first one added
+    int add(NodeKind kind, int token, IdType type) {
+        if (size == this.kind.length) {
+            int capacity = size * 2;
+            this.kind = Arrays.copyOf(this.kind, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+            this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+            this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+            this.token = Arrays.copyOf(this.token, capacity);
+        }
+        this.kind[size] = (byte) kind.ordinal();
+        this.type[size] = (byte) (type == null ? NONE : type.ordinal());
+        this.firstChild[size] = NONE;
+        this.nextSibling[size] = NONE;
+        this.token[size] = token;
+        return size++;
+    }
+
+    void setFirstChild(int node, int child) {
+        firstChild[node] = child;
+    }
+
+    void setNextSibling(int node, int sibling) {
+        nextSibling[node] = sibling;
+    }
+
+    void setToken(int node, int token) {
+        this.token[node] = token;
+    }
+
+    public int root() {
+        return size == 0 ? NONE : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kind[node]];
+    }
+
+    // null when unresolved
+    public IdType type(int node) {
+        return type[node] == NONE ? null : ID_TYPES[type[node]];
+    }
+
+    public int token(int node) {
+        return token[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public interface Visitor {
+        void enter(Ast ast, int node);
+
+        default void exit(Ast ast, int node) {
+        }
+    }
+
+    // Depth-first walk from the root on an explicit stack
+    public void walk(Visitor visitor) {
+        Cursor cursor = cursor();
+        int node;
+        while ((node = cursor.next()) != NONE) {
+            if (cursor.entering()) {
+                visitor.enter(this, node);
+            } else {
+                visitor.exit(this, node);
+            }
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Yields every node twice, when entering it and when leaving it after
+    // its children, without recursion. skip() right after entering a node
+    // passes over its children and goes straight to leaving it
+    public class Cursor {
+        private int[] path = new int[32];
+        private int depth;
+        private int node = NONE;
+        private boolean entering;
+        private boolean skip;
+        private boolean done;
+
+        private Cursor() {
+        }
+
+        public int next() {
+            if (done) {
+                return NONE;
+            }
+            if (node == NONE) {
+                done = size == 0;
+                return done ? NONE : enter(0);
+            }
+            if (entering) {
+                if (!skip && firstChild[node] != NONE) {
+                    if (depth == path.length) {
+                        path = Arrays.copyOf(path, depth * 2);
+                    }
+                    path[depth++] = node;
+                    return enter(firstChild[node]);
+                }
+                skip = false;
+                entering = false;
+                return node;
+            }
+            if (nextSibling[node] != NONE) {
+                return enter(nextSibling[node]);
+            }
+            if (depth == 0) {
+                done = true;
+                return NONE;
+            }
+            node = path[--depth];
+            return node;
+        }
+
+        public void skip() {
+            skip = entering;
+        }
+
+        public boolean entering() {
+            return entering;
+        }
+
+        // Ancestors of the current node
+        public int depth() {
+            return depth;
+        }
+
+        private int enter(int next) {
+            node = next;
+            entering = true;
+            return node;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,415 @@
+package syntatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import lexical.TokenType;
+
+// The language grammar as data, with the LL(1) table derived from it.
+//
+// Symbols are ints: terminals are TokenType ordinals (below 64), nonterminals
+// start at 64 and semantic actions at 128. Actions derive nothing; the parser
+// runs them when they reach the top of its stack.
+final class Grammar {
+
+    static final int TERMINALS = TokenType.values().length;
+
+    // Nonterminals
+    static final int START = 64;
+    static final int PROGRAM = START + 1;
+    static final int BODY = START + 2;
+    static final int DECL_LIST = START + 3;
+    static final int DECL_TAIL = START + 4;
+    static final int DECL = START + 5;
+    static final int IDENT_LIST = START + 6;
+    static final int IDENT_TAIL = START + 7;
+    static final int TYPE = START + 8;
+    static final int STMT_LIST = START + 9;
+    static final int STMT_TAIL = START + 10;
+    static final int STMT = START + 11;
+    static final int ASSIGN_STMT = START + 12;
+    static final int IF_STMT = START + 13;
+    static final int IF_TAIL = START + 14;
+    static final int REPEAT_STMT = START + 15;
+    static final int STMT_SUFFIX = START + 16;
+    static final int READ_STMT = START + 17;
+    static final int WRITE_STMT = START + 18;
+    static final int WRITABLE = START + 19;
+    static final int CONDITION = START + 20;
+    static final int EXPRESSION = START + 21;
+    static final int SIMPLE_EXPR = START + 22;
+    static final int NONTERMINALS = 23;
+
+    // Semantic actions
+    static final int ACTIONS = 128;
+    static final int DECLARE_APP = ACTIONS;         // declare the current NAME as the app
+    static final int DECLARE = ACTIONS + 1;         // declare the current NAME with the type on top
+    static final int PUSH_INTEGER = ACTIONS + 2;    // push INT_NUMBER
+    static final int PUSH_REAL = ACTIONS + 3;       // push REAL_NUMBER
+    static final int POP = ACTIONS + 4;             // drop the top value
+    static final int PUSH_ID = ACTIONS + 5;         // push the current NAME's id
+    static final int ASSIGN = ACTIONS + 6;          // check id := type, pop both
+    static final int IS_BOOLEAN = ACTIONS + 7;      // check the condition on top, pop it into the node
+    static final int BEGIN_BLOCK = ACTIONS + 8;     // open a BLOCK node
+    static final int BEGIN_IF = ACTIONS + 9;        // open an IF node
+    static final int BEGIN_REPEAT = ACTIONS + 10;   // open a REPEAT node
+    static final int BEGIN_WRITE = ACTIONS + 11;    // open a WRITE node
+    static final int END_NODE = ACTIONS + 12;       // close the innermost open node
+    static final int ATTACH = ACTIONS + 13;         // pop the expression on top into the node
+    static final int TEXT_LEAF = ACTIONS + 14;      // add the current TEXT to the node
+    static final int READ_LEAF = ACTIONS + 15;      // add the current NAME as a READ
+    private static final int SYMBOLS = ACTIONS + 16;
+
+    // Binary operator precedence by TokenType ordinal, 0 for anything else.
+    // All of them are left associative
+    static final int RELATIONAL = 1;
+    static final int ADDITIVE = 2;
+    static final int MULTIPLICATIVE = 3;
+    static final byte[] PRECEDENCE = new byte[TokenType.values().length];
+
+    // FIRST and FOLLOW as terminal bitsets (TokenType fits in a long)
+    static final long[] FIRST = new long[NONTERMINALS];
+    static final long[] FOLLOW = new long[NONTERMINALS];
+    static final boolean[] NULLABLE = new boolean[NONTERMINALS];
+
+    private static final List<int[]> RULES = new ArrayList<>();
+
+    static {
+        rule(START, PROGRAM, t(TokenType.END_OF_FILE));
+
+        // program ::= app identifier body
+        rule(PROGRAM, t(TokenType.APP), DECLARE_APP, t(TokenType.NAME), BODY);
+
+        // body ::= var decl-list init stmt-list return | init stmt-list return
+        rule(BODY, t(TokenType.VAR), DECL_LIST, t(TokenType.INIT), BEGIN_BLOCK, STMT_LIST, END_NODE, t(TokenType.RETURN));
+        rule(BODY, t(TokenType.INIT), BEGIN_BLOCK, STMT_LIST, END_NODE, t(TokenType.RETURN));
+
+        // decl-list ::= decl decl-tail
+        rule(DECL_LIST, DECL, DECL_TAIL);
+
+        // decl-tail ::= ";" decl decl-tail | lambda
+        rule(DECL_TAIL, t(TokenType.SEMICOLON), DECL, DECL_TAIL);
+        rule(DECL_TAIL);
+
+        // decl ::= type ident-list
+        // (the first identifier is declared before ident-list checks it is a NAME)
+        rule(DECL, TYPE, DECLARE, IDENT_LIST, POP);
+
+        // ident-list ::= identifier ident-tail
+        rule(IDENT_LIST, t(TokenType.NAME), IDENT_TAIL);
+
+        // ident-tail ::= "," identifier ident-tail | lambda
+        rule(IDENT_TAIL, t(TokenType.COMMA), DECLARE, t(TokenType.NAME), IDENT_TAIL);
+        rule(IDENT_TAIL);
+
+        // type ::= integer | real
+        rule(TYPE, t(TokenType.INTEGER), PUSH_INTEGER);
+        rule(TYPE, t(TokenType.REAL), PUSH_REAL);
+
+        // stmt-list ::= stmt stmt-tail
+        rule(STMT_LIST, STMT, STMT_TAIL);
+
+        // stmt-tail ::= ";" stmt stmt-tail | lambda
+        rule(STMT_TAIL, t(TokenType.SEMICOLON), STMT, STMT_TAIL);
+        rule(STMT_TAIL);
+
+        // stmt ::= assign-stmt | if-stmt | repeat-stmt | read-stmt | write-stmt
+        rule(STMT, ASSIGN_STMT);
+        rule(STMT, IF_STMT);
+        rule(STMT, REPEAT_STMT);
+        rule(STMT, READ_STMT);
+        rule(STMT, WRITE_STMT);
+
+        // assign-stmt ::= identifier ":=" simple_expr
+        rule(ASSIGN_STMT, PUSH_ID, t(TokenType.NAME), t(TokenType.ASSIGN), SIMPLE_EXPR, ASSIGN);
+
+        // if-stmt ::= if condition then stmt-list if-tail
+        rule(IF_STMT, BEGIN_IF, t(TokenType.IF), CONDITION, IS_BOOLEAN, t(TokenType.THEN),
+            BEGIN_BLOCK, STMT_LIST, END_NODE, IF_TAIL, END_NODE);
+
+        // if-tail ::= end | else stmt-list end
+        rule(IF_TAIL, t(TokenType.END));
+        rule(IF_TAIL, t(TokenType.ELSE), BEGIN_BLOCK, STMT_LIST, END_NODE, t(TokenType.END));
+
+        // repeat-stmt ::= repeat stmt-list stmt-suffix
+        rule(REPEAT_STMT, BEGIN_REPEAT, t(TokenType.REPEAT), BEGIN_BLOCK, STMT_LIST, END_NODE, STMT_SUFFIX, END_NODE);
+
+        // stmt-suffix ::= until condition
+        rule(STMT_SUFFIX, t(TokenType.UNTIL), CONDITION, IS_BOOLEAN);
+
+        // read-stmt ::= read "(" identifier ")"
+        rule(READ_STMT, t(TokenType.READ), t(TokenType.OPEN_PAR), READ_LEAF, t(TokenType.NAME), t(TokenType.CLOSE_PAR));
+
+        // write-stmt ::= write "(" writable ")"
+        rule(WRITE_STMT, BEGIN_WRITE, t(TokenType.WRITE), t(TokenType.OPEN_PAR), WRITABLE, t(TokenType.CLOSE_PAR), END_NODE);
+
+        // writable ::= simple-expr | literal
+        rule(WRITABLE, SIMPLE_EXPR, ATTACH);
+        rule(WRITABLE, TEXT_LEAF, t(TokenType.TEXT));
+
+        // condition ::= expression
+        rule(CONDITION, EXPRESSION);
+
+        // expression ::= simple-expr [relop simple-expr]
+        // simple-expr ::= term {addop term}
+        // term ::= factor-a {mulop factor-a}
+        // factor-a ::= factor | "!" factor | "-" factor
+        // factor ::= identifier | constant | "(" expression ")"
+        //
+        // Expressions are parsed by operator precedence in SyntaticAnalysis;
+        // the table only needs to know which tokens start one
+        operand(EXPRESSION, TokenType.NAME, TokenType.INT_NUMBER, TokenType.REAL_NUMBER,
+            TokenType.OPEN_PAR, TokenType.NOT, TokenType.SUB);
+        operand(SIMPLE_EXPR, TokenType.NAME, TokenType.INT_NUMBER, TokenType.REAL_NUMBER,
+            TokenType.OPEN_PAR, TokenType.NOT, TokenType.SUB);
+
+        // relop ::= EQUAL | GREATER_THAN | LOWER_THAN | LOWER_EQUAL | GREATER_EQUAL | NOT_EQUAL
+        precedence(RELATIONAL, TokenType.EQUAL, TokenType.GREATER_THAN, TokenType.LOWER_THAN,
+            TokenType.LOWER_EQUAL, TokenType.GREATER_EQUAL, TokenType.NOT_EQUAL);
+
+        // addop ::= ADD |  SUB | OR
+        precedence(ADDITIVE, TokenType.ADD, TokenType.SUB, TokenType.OR);
+
+        // mulop ::= MUL | DIV | AND
+        precedence(MULTIPLICATIVE, TokenType.MUL, TokenType.DIV, TokenType.AND);
+    }
+
+    // Right-hand sides, reversed so they can be pushed onto the parse stack as is
+    static final int[][] RHS = new int[RULES.size()][];
+    static final int[] LHS = new int[RULES.size()];
+
+    // Rule to expand for (nonterminal, lookahead), or -1 for a syntax error
+    static final int[] TABLE = new int[NONTERMINALS * TERMINALS];
+
+    // Tokens error recovery resumes from
+    static final long SYNC = 1L << TokenType.SEMICOLON.ordinal() | 1L << TokenType.END.ordinal()
+        | 1L << TokenType.ELSE.ordinal() | 1L << TokenType.UNTIL.ordinal()
+        | 1L << TokenType.RETURN.ordinal() | 1L << TokenType.END_OF_FILE.ordinal();
+
+    // Net change each symbol makes to the value stack once fully parsed, used
+    // to keep it balanced when error recovery drops symbols
+    static final int[] EFFECT = new int[SYMBOLS];
+
+    // Tokens that may follow a complete operand without being a syntax error
+    // right there: operators, and whatever the grammar lets follow an expression
+    static final long EXPRESSION_END;
+
+    static {
+        if (TERMINALS > START) {
+            throw new IllegalStateException("TokenType does not fit in a terminal bitset");
+        }
+        for (int r = 0; r < RULES.size(); r++) {
+            int[] rule = RULES.get(r);
+            LHS[r] = rule[0];
+            RHS[r] = new int[rule.length - 1];
+            for (int i = 1; i < rule.length; i++) {
+                RHS[r][rule.length - 1 - i] = rule[i];
+            }
+        }
+        computeFirst();
+        computeFollow();
+        buildTable();
+        computeEffects();
+
+        long end = FOLLOW[EXPRESSION - START] | FOLLOW[SIMPLE_EXPR - START];
+        for (int t = 0; t < TERMINALS; t++) {
+            if (PRECEDENCE[t] != 0) {
+                end |= 1L << t;
+            }
+        }
+        EXPRESSION_END = end;
+    }
+
+    private Grammar() {
+    }
+
+    static boolean isTerminal(int symbol) {
+        return symbol < START;
+    }
+
+    static boolean isAction(int symbol) {
+        return symbol >= ACTIONS;
+    }
+
+    static int expand(int nonterminal, TokenType lookahead) {
+        return TABLE[(nonterminal - START) * TERMINALS + lookahead.ordinal()];
+    }
+
+    static boolean isExpression(int symbol) {
+        return symbol == EXPRESSION || symbol == SIMPLE_EXPR;
+    }
+
+    private static int t(TokenType type) {
+        return type.ordinal();
+    }
+
+    private static void operand(int nonterminal, TokenType... first) {
+        for (TokenType type : first) {
+            FIRST[nonterminal - START] |= 1L << type.ordinal();
+        }
+    }
+
+    private static void precedence(int level, TokenType... operators) {
+        for (TokenType op : operators) {
+            PRECEDENCE[op.ordinal()] = (byte) level;
+        }
+    }
+
+    private static void rule(int lhs, int... rhs) {
+        int[] rule = new int[rhs.length + 1];
+        rule[0] = lhs;
+        System.arraycopy(rhs, 0, rule, 1, rhs.length);
+        RULES.add(rule);
+    }
+
+    // FIRST of a (reversed) right-hand side; nullable[0] tells whether all of
+    // it can derive lambda
+    private static long firstOf(int[] rhs, boolean[] nullable) {
+        long first = 0;
+        for (int i = rhs.length - 1; i >= 0; i--) {
+            int symbol = rhs[i];
+            if (isAction(symbol)) {
+                continue;
+            }
+            if (isTerminal(symbol)) {
+                nullable[0] = false;
+                return first | 1L << symbol;
+            }
+            first |= FIRST[symbol - START];
+            if (!NULLABLE[symbol - START]) {
+                nullable[0] = false;
+                return first;
+            }
+        }
+        nullable[0] = true;
+        return first;
+    }
+
+    private static void computeFirst() {
+        boolean[] nullable = new boolean[1];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < RHS.length; r++) {
+                int a = LHS[r] - START;
+                long first = FIRST[a] | firstOf(RHS[r], nullable);
+                if (first != FIRST[a] || (nullable[0] && !NULLABLE[a])) {
+                    FIRST[a] = first;
+                    NULLABLE[a] |= nullable[0];
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static void computeFollow() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < RHS.length; r++) {
+                int[] rhs = RHS[r];
+                // Walk right to left carrying FIRST of what follows each symbol
+                long trailer = FOLLOW[LHS[r] - START];
+                for (int i = 0; i < rhs.length; i++) {
+                    int symbol = rhs[i];
+                    if (isAction(symbol)) {
+                        continue;
+                    }
+                    if (isTerminal(symbol)) {
+                        trailer = 1L << symbol;
+                        continue;
+                    }
+                    int b = symbol - START;
+                    if ((FOLLOW[b] | trailer) != FOLLOW[b]) {
+                        FOLLOW[b] |= trailer;
+                        changed = true;
+                    }
+                    trailer = NULLABLE[b] ? trailer | FIRST[b] : FIRST[b];
+                }
+            }
+        }
+    }
+
+    private static void computeEffects() {
+        EFFECT[PUSH_INTEGER] = 1;
+        EFFECT[PUSH_REAL] = 1;
+        EFFECT[POP] = -1;
+        EFFECT[PUSH_ID] = 1;
+        EFFECT[ASSIGN] = -2;
+        EFFECT[IS_BOOLEAN] = -1;
+        EFFECT[ATTACH] = -1;
+        EFFECT[EXPRESSION] = 1;
+        EFFECT[SIMPLE_EXPR] = 1;
+
+        // A nonterminal's effect is that of any of its rules: take the first
+        // rule that can be summed, then check all rules agree and close every
+        // node they open
+        boolean[] known = new boolean[NONTERMINALS];
+        known[EXPRESSION - START] = true;
+        known[SIMPLE_EXPR - START] = true;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = 0; r < RHS.length; r++) {
+                int a = LHS[r] - START;
+                if (known[a]) {
+                    continue;
+                }
+                int effect = 0;
+                boolean sum = true;
+                for (int symbol : RHS[r]) {
+                    if (!isTerminal(symbol) && !isAction(symbol) && !known[symbol - START]) {
+                        sum = false;
+                        break;
+                    }
+                    effect += EFFECT[symbol];
+                }
+                if (sum) {
+                    EFFECT[LHS[r]] = effect;
+                    known[a] = true;
+                    changed = true;
+                }
+            }
+        }
+        for (int r = 0; r < RHS.length; r++) {
+            int effect = 0;
+            for (int symbol : RHS[r]) {
+                effect += EFFECT[symbol];
+            }
+            int open = 0;
+            for (int symbol : RHS[r]) {
+                if (symbol >= BEGIN_BLOCK && symbol <= BEGIN_WRITE) {
+                    open++;
+                } else if (symbol == END_NODE) {
+                    open--;
+                }
+            }
+            if (effect != EFFECT[LHS[r]] || open != 0) {
+                throw new IllegalStateException("Ações semânticas desbalanceadas na regra " + r);
+            }
+        }
+    }
+
+    private static void buildTable() {
+        Arrays.fill(TABLE, -1);
+        boolean[] nullable = new boolean[1];
+        for (int r = 0; r < RHS.length; r++) {
+            int a = LHS[r] - START;
+            long predict = firstOf(RHS[r], nullable);
+            if (nullable[0]) {
+                predict |= FOLLOW[a];
+            }
+            for (int t = 0; t < TERMINALS; t++) {
+                if ((predict & 1L << t) == 0) {
+                    continue;
+                }
+                int cell = a * TERMINALS + t;
+                if (TABLE[cell] != -1) {
+                    throw new IllegalStateException("Gramática não é LL(1): conflito em " + LHS[r] + " / " + TokenType.values()[t]);
+                }
+                TABLE[cell] = r;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package syntatic;
+
+// What each node's token is and which children it has, in order
+public enum NodeKind {
+    PROGRAM,   // app name; DECL..., BLOCK
+    DECL,      // declared name, with its type
+    BLOCK,     // first token; statements
+    ASSIGN,    // target name, with its type; expression
+    IF,        // if; condition, then BLOCK, else BLOCK if any
+    REPEAT,    // repeat; BLOCK, condition
+    READ,      // name read into, with its type
+    WRITE,     // write; expression or TEXT
+    TEXT,      // literal
+    BINARY,    // operator, with the result type; left, right
+    UNARY,     // "!" or "-", with the result type; operand
+    VARIABLE,  // name, with its type
+    CONSTANT   // number, with its type
+}
\ No newline at end of file
@@ -1,643 +1,562 @@
 package syntatic;
 
-import lexical.Lexeme;
+import java.util.Arrays;
+
+import diagnostic.DiagnosticCode;
+import diagnostic.DiagnosticList;
+import diagnostic.DiagnosticSink;
 import lexical.LexicalAnalysis;
+import lexical.LexicalError;
+import lexical.TokenBuffer;
 import lexical.TokenType;
 import semantic.SemanticAnalysis;
-import semantic.SemanticException;
 import semantic.IdType;
 
 public class SyntaticAnalysis {
 
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final IdType[] ID_TYPES = IdType.values();
+
+    // Value of something whose error was already reported: checks on it are
+    // skipped so one mistake is not reported again by every use
+    private static final int UNKNOWN = -1;
+
+    // Syntax errors less than this many tokens after a recovery point are
+    // usually fallout of the recovery itself, so they are not reported
+    private static final int RECOVERY_QUIET = 3;
+
+    // Streaming mode pulls tokens from lex into the buffer as the parser
+    // advances; a pre-lexed buffer has lex == null
     private LexicalAnalysis lex;
+    private TokenBuffer tokens;
     private SemanticAnalysis s;
-    private Lexeme current;
+    private int pos;
+    private TokenType current;
+
+    // Every diagnostic, syntax or semantic, goes through counted so the
+    // parser can cap them and spot cascades
+    private final DiagnosticSink sink;
+    private final DiagnosticSink counted = this::count;
+    private int errors;
+    private int maxErrors = DEFAULT_MAX_ERRORS;
+    private int lastRecovery = -1;
+    private int lastError = -1;
+
+    // Semantic values of the actions: IdType ordinals and identifier ids,
+    // each with the tree it came from (the token of an identifier)
+    private int[] values = new int[32];
+    private int[] trees = new int[32];
+    private int vp;
+
+    // Pending operators of the expression being parsed: binary operator and
+    // OPEN_PAR ordinals, and unary operators as -1 - ordinal, with their tokens
+    private int[] ops = new int[32];
+    private int[] opTokens = new int[32];
+    private int op;
+
+    // Nodes still taking children, with the last child of each
+    private Ast ast;
+    private int[] open = new int[32];
+    private int[] tails = new int[32];
+    private int depth;
 
     public SyntaticAnalysis(LexicalAnalysis lex) {
-        this.lex = lex;
-        this.current = lex.nextToken();
-        this.s = new SemanticAnalysis();
+        this(lex, new DiagnosticList());
     }
 
-    public void start() {
-        program();
-        eat(TokenType.END_OF_FILE);
+    public SyntaticAnalysis(LexicalAnalysis lex, DiagnosticSink sink) {
+        this.lex = lex;
+        this.tokens = new TokenBuffer(lex);
+        this.tokens.add(lex);
+        this.sink = sink;
+        this.s = new SemanticAnalysis(tokens, counted);
+        this.ast = new Ast(Math.max(tokens.size(), tokens.getSource().length() / 8));
+        this.pos = 0;
+        this.current = tokens.type(0);
     }
 
-    private void advance() {
-        // System.out.println("Advanced (\"" + current.token + "\", " +
-        //     current.type + ")");
-        current = lex.nextToken();
+    public SyntaticAnalysis(TokenBuffer tokens) {
+        this(tokens, new DiagnosticList());
     }
 
-    private void eat(TokenType type) {
-        // System.out.println("Expected (..., " + type + "), found (\"" + 
-        //     current.token + "\", " + current.type + ")");
-        if (type == current.type) {
-            current = lex.nextToken();
-        } else {
-            showError();
-        }
+    public SyntaticAnalysis(TokenBuffer tokens, DiagnosticSink sink) {
+        this.lex = null;
+        this.tokens = tokens;
+        this.sink = sink;
+        this.s = new SemanticAnalysis(tokens, counted);
+        this.ast = new Ast(Math.max(tokens.size(), tokens.getSource().length() / 8));
+        this.pos = 0;
+        this.current = tokens.type(0);
     }
 
-    private void showError() {
-        System.out.printf("%02d: ", lex.getLine());
-
-        switch (current.type) {
-            case INVALID_TOKEN:
-                System.out.printf("Lexema inválido [%s]\n", current.token);
-                break;
-            case UNEXPECTED_EOF:
-            case END_OF_FILE:
-                System.out.printf("Fim de arquivo inesperado\n");
-                break;
-            default:
-                System.out.printf("Lexema não esperado [%s]\n", current.token);
-                break;
-        }
-
-        System.exit(1);
+    public TokenBuffer getTokens() {
+        return this.tokens;
     }
 
-    private void showError(String msg) {
-        System.out.printf("%02d: " + msg, lex.getLine());
-
-        System.exit(1);
+    // Complete only when the parse had no errors
+    public Ast getAst() {
+        return this.ast;
     }
 
-    // program ::= app identifier body
-    private void program() {
-        // System.out.println("program");
-        eat(TokenType.APP);
-        try {
-            s.addVar(current.token, IdType.APP);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
-        }
-        eat(TokenType.NAME);
-        body();
+    public SemanticAnalysis getSemantic() {
+        return this.s;
     }
 
-    // body ::= var decl-list init stmt-list return | init stmt-list return 
-    private void body() {
-        // System.out.println("body");
-        if (current.type == TokenType.VAR) {
-            advance();
-            declList();
-        }
-        eat(TokenType.INIT);
-        stmtList();
-        eat(TokenType.RETURN);
+    public DiagnosticSink getSink() {
+        return this.sink;
     }
 
-    // decl-list ::= decl decl-tail
-    private void declList() {
-        // System.out.println("decl-list");
-        decl();
-        declTail();
+    public int getErrorCount() {
+        return Math.min(errors, maxErrors);
     }
 
-    // decl-tail ::= “;” decl decl-tail | lambda 
-    private void declTail() {
-        // System.out.println("decl-tail");
-        switch (current.type) {
-            case SEMICOLON:
-                advance();
-                decl();
-                declTail();
-                break;
-            case INIT:
-                break;
-            default:
-                showError();
-                break;
-        }
+    public boolean hasErrors() {
+        return errors > 0;
     }
 
-    // decl ::= type ident-list
-    private void decl() {
-        // System.out.println("decl");
-        IdType idType = type();
-        identList(idType);
+    // Diagnostics past the cap are dropped and parsing stops
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
     }
 
-    // ident-list ::= identifier ident-tail 
-    private void identList(IdType idType) {
-        // System.out.println("ident-list");
+    // Runs the LL(1) table on an explicit stack, so memory grows with the
+    // nesting of if/repeat/parentheses and never with the program length.
+    // Errors go to the sink and the parse goes on after them. A malformed
+    // string stops the lexer, so in streaming mode it ends the parse: it is
+    // thrown if it is the first error and reported otherwise
+    public void start() {
         try {
-            s.addVar(current.token, idType);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
+            parse();
+        } catch (LexicalError e) {
+            if (errors == 0) {
+                throw e;
+            }
+            counted.report(DiagnosticCode.MALFORMED_TEXT, e.getLine(), -1, 0);
         }
-        eat(TokenType.NAME);
-        identTail(idType);
     }
 
-    // ident-tail ::= "," identifier ident-tail | lambda 
-    private void identTail(IdType idType) {
-        // System.out.println("ident-tail");
-        switch (current.type) {
-            case COMMA:
-                advance();
+    private void parse() {
+        int[] stack = new int[64];
+        int sp = 0;
+        stack[sp++] = Grammar.START;
 
-                try {
-                    s.addVar(current.token, idType);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
+        int root = ast.add(NodeKind.PROGRAM, Ast.NONE, IdType.APP);
+        open[depth] = root;
+        tails[depth++] = Ast.NONE;
+
+        while (sp > 0 && errors < maxErrors) {
+            int symbol = stack[--sp];
+            if (Grammar.isTerminal(symbol)) {
+                if (symbol == current.ordinal()) {
+                    advance();
+                    continue;
+                }
+            } else if (Grammar.isAction(symbol)) {
+                action(symbol);
+                continue;
+            } else if (Grammar.isExpression(symbol)) {
+                if (expression(symbol == Grammar.EXPRESSION)) {
+                    continue;
+                }
+            } else {
+                int rule = Grammar.expand(symbol, current);
+                if (rule >= 0) {
+                    int[] rhs = Grammar.RHS[rule];
+                    if (sp + rhs.length > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    System.arraycopy(rhs, 0, stack, sp, rhs.length);
+                    sp += rhs.length;
+                    continue;
                 }
+            }
 
-                eat(TokenType.NAME);
-                identTail(idType);
-                break;
-            case INIT:
-            case SEMICOLON:
-                break;
-            default:
+            // The symbol cannot take the current token: put it back and
+            // resynchronize
+            if (tokens.start(pos) != lastError && (lastRecovery < 0 || pos - lastRecovery >= RECOVERY_QUIET)) {
                 showError();
-                break;
+            }
+            sp = recover(stack, sp + 1);
         }
     }
 
-    // type ::= integer | real
-    private IdType type() {
-        // System.out.println("type");
-        switch (current.type) {
-            case INTEGER:
-                advance();
-                return IdType.INT_NUMBER;
-            case REAL:
-                advance();
-                return IdType.REAL_NUMBER;
-            default:
-                showError();
-                return null;
+    // Panic mode: skips tokens up to one the parse can resume from (";",
+    // end, else, until, return or the end of the file) and drops parse stack
+    // symbols until one that accepts it. Dropped symbols still get their
+    // effect on the value stack, as UNKNOWN values, so the actions left on
+    // the stack find what they expect. Returns the new stack size, 0 to stop
+    private int recover(int[] stack, int sp) {
+        if (pos == lastRecovery) {
+            // Resuming here already failed once, so give up on this token
+            if (current == TokenType.END_OF_FILE) {
+                return 0;
+            }
+            advance();
         }
-    }
 
-    // stmt-list ::= stmt stmt-tail
-    private void stmtList() {
-        // System.out.println("stmt-list");
-        stmt();
-        stmtTail();
-    }
-
-    // stmt-tail ::= ";" stmt stmt-tail | lambda 
-    private void stmtTail() {
-        // System.out.println("stmtTail");
-        switch (current.type) {
-            case SEMICOLON:
+        for (;;) {
+            while ((Grammar.SYNC & 1L << current.ordinal()) == 0) {
                 advance();
-                stmt();
-                stmtTail();
-                break;
-            case RETURN:
-            case END:
-            case ELSE:
-            case UNTIL:
-                break;
-            default:
-                showError();
-                break;
+            }
+            for (int i = sp - 1; i >= 0; i--) {
+                if (accepts(stack[i])) {
+                    for (int j = sp - 1; j > i; j--) {
+                        drop(stack[j]);
+                    }
+                    lastRecovery = pos;
+                    return i + 1;
+                }
+            }
+            if (current == TokenType.END_OF_FILE) {
+                return 0;
+            }
+            advance();
         }
     }
 
-    // stmt ::= assign-stmt | if-stmt | repeat-stmt | read-stmt | write-stmt
-    private void stmt() {
-        // System.out.println("stmt");
-
-        switch (current.type) {
-            case NAME:
-                assignStmt();
-                break;
-            case IF:
-                ifStmt();
-                break;
-            case REPEAT:
-                repeatStmt();
-                break;
-            case READ:
-                readStmt();
-                break;
-            case WRITE:
-                writeStmt();
-                break;
-            default:
-                showError();
+    private boolean accepts(int symbol) {
+        if (Grammar.isTerminal(symbol)) {
+            return symbol == current.ordinal();
         }
+        if (Grammar.isAction(symbol) || Grammar.isExpression(symbol)) {
+            return false;
+        }
+        return Grammar.expand(symbol, current) >= 0;
     }
 
-
-    // assign-stmt ::= identifier ":=" simple_expr
-    private void assignStmt() {
-        // System.out.println("assign-stmt");
-        String identifier = current.token;
-        eat(TokenType.NAME);
-        eat(TokenType.ASSIGN);
-        IdType type = simpleExpr();
-
-        try {
-            s.checkDeclaration(identifier);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
+    private void drop(int symbol) {
+        int effect = Grammar.EFFECT[symbol];
+        if (effect < 0) {
+            vp += effect;
         }
-
-        //System.out.println(identifier + " " + type);
-
-        try {
-            s.checkHasAssign(identifier, type);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
+        for (int i = 0; i < effect; i++) {
+            push(UNKNOWN, Ast.NONE);
         }
-    }
-
-    // if-stmt ::= if condition then stmt-list if-tail
-    private void ifStmt() {
-        // System.out.println("if-stmt");
-        eat(TokenType.IF);
-        IdType conditionType = condition();
-
-        try {
-            s.isBoolean(conditionType);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
+        if (symbol >= Grammar.BEGIN_BLOCK && symbol <= Grammar.END_NODE) {
+            action(symbol);
         }
-
-        eat(TokenType.THEN);
-        stmtList();
-        ifTail();
     }
 
-    // if-tail ::= end | else stmt-list end
-    private void ifTail() {
-        // System.out.println("if-tail");
-        if (current.type == TokenType.ELSE) {
-            advance();
-            stmtList();
+    private void advance() {
+        // System.out.println("Advanced (\"" + tokens.token(pos) + "\", " +
+        //     current + ")");
+        if (++pos == tokens.size()) {
+            if (lex != null) {
+                tokens.add(lex);
+            } else {
+                pos--;
+            }
         }
-        eat(TokenType.END);
+        current = tokens.type(pos);
     }
 
-    // repeat-stmt ::= repeat stmt-list stmt-suffix
-    private void repeatStmt() {
-        // System.out.println("repeat-stmt");
-        eat(TokenType.REPEAT);
-        stmtList();
-        stmtSuffix();
+    private void showError() {
+        DiagnosticCode code;
+        switch (current) {
+            case INVALID_TOKEN:
+                code = DiagnosticCode.INVALID_TOKEN;
+                break;
+            case UNEXPECTED_EOF:
+            case END_OF_FILE:
+                code = DiagnosticCode.UNEXPECTED_EOF;
+                break;
+            default:
+                code = DiagnosticCode.UNEXPECTED_TOKEN;
+                break;
+        }
+        counted.report(code, tokens.line(pos), tokens.start(pos), tokens.length(pos));
     }
 
-    // stmt-suffix ::= until condition
-    private void stmtSuffix() {
-        // System.out.println("stmt-suffix");
-        eat(TokenType.UNTIL);
-        IdType conditionType = condition();
-
-        try {
-            s.isBoolean(conditionType);
-        } catch (SemanticException e) {
-            showError(e.getMessage());
+    // Diagnostics past the cap are counted but not passed on
+    private void count(DiagnosticCode code, int line, int start, int length) {
+        if (errors < maxErrors) {
+            sink.report(code, line, start, length);
         }
+        errors++;
+        lastError = start;
     }
 
-    // read-stmt ::= read "(" identifier ")"
-    private void readStmt() {
-        // System.out.println("rrad-stmt");
-        eat(TokenType.READ);
-        eat(TokenType.OPEN_PAR);
-        eat(TokenType.NAME);
-        eat(TokenType.CLOSE_PAR);
-    }
-
-    // write-stmt ::= write "(" writable ")"
-    private void writeStmt() {
-        // System.out.println("write-stmt");
-        eat(TokenType.WRITE);
-        eat(TokenType.OPEN_PAR);
-        writable();
-        eat(TokenType.CLOSE_PAR);
-    }
-
-    // writable ::= simple-expr | literal
-    private void writable() {
-        // System.out.println("writable");
-        switch (current.type) {
-            case NAME:
-            case INT_NUMBER:
-            case REAL_NUMBER:
-            case OPEN_PAR:
-            case NOT:
-            case SUB:
-                simpleExpr();
+    private void action(int action) {
+        switch (action) {
+            case Grammar.DECLARE_APP:
+                s.addVar(current, tokens.id(pos), IdType.APP, pos);
+                ast.setToken(open[0], pos);
                 break;
-            case TEXT:
-                advance();
+            case Grammar.DECLARE:
+                if (values[vp - 1] != UNKNOWN) {
+                    s.addVar(current, tokens.id(pos), peekType(), pos);
+                }
+                if (current == TokenType.NAME) {
+                    append(ast.add(NodeKind.DECL, pos, peekType()));
+                }
                 break;
-            default:
-                showError();
+            case Grammar.PUSH_INTEGER:
+                push(IdType.INT_NUMBER.ordinal(), Ast.NONE);
+                break;
+            case Grammar.PUSH_REAL:
+                push(IdType.REAL_NUMBER.ordinal(), Ast.NONE);
+                break;
+            case Grammar.POP:
+                vp--;
+                break;
+            case Grammar.PUSH_ID:
+                push(tokens.id(pos), pos);
+                break;
+            case Grammar.ASSIGN: {
+                int tree = trees[vp - 1];
+                IdType type = popType();
+                int name = trees[vp - 1];
+                int identifier = values[--vp];
+                IdType target = null;
+                if (identifier != UNKNOWN && s.checkDeclaration(identifier, pos, name)) {
+                    target = s.typeOf(identifier);
+                    if (type != null) {
+                        s.checkHasAssign(identifier, type, pos, name);
+                    }
+                }
+                int node = ast.add(NodeKind.ASSIGN, name, target);
+                ast.setFirstChild(node, tree);
+                append(node);
+                break;
+            }
+            case Grammar.IS_BOOLEAN: {
+                int tree = trees[vp - 1];
+                IdType type = popType();
+                if (type != null) {
+                    s.isBoolean(type, pos, tree == Ast.NONE ? pos : ast.token(tree));
+                }
+                attach(tree);
+                break;
+            }
+            case Grammar.BEGIN_BLOCK:
+                begin(NodeKind.BLOCK);
+                break;
+            case Grammar.BEGIN_IF:
+                begin(NodeKind.IF);
+                break;
+            case Grammar.BEGIN_REPEAT:
+                begin(NodeKind.REPEAT);
+                break;
+            case Grammar.BEGIN_WRITE:
+                begin(NodeKind.WRITE);
+                break;
+            case Grammar.END_NODE:
+                depth--;
+                break;
+            case Grammar.ATTACH:
+                attach(trees[--vp]);
+                break;
+            case Grammar.TEXT_LEAF:
+                append(ast.add(NodeKind.TEXT, pos, null));
                 break;
+            case Grammar.READ_LEAF:
+                if (current == TokenType.NAME) {
+                    int id = tokens.id(pos);
+                    s.checkReadable(id, pos);
+                    append(ast.add(NodeKind.READ, pos, s.typeOf(id)));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Ação semântica desconhecida: " + action);
         }
     }
 
-    // condition ::= expression
-    private IdType  condition() {
-        // System.out.println("proCondition");
-        return expr();
-    }
-
-    // expression ::= simple-expr expr-tail
-    private IdType expr() {
-        // System.out.println("expression");
-        IdType lexpr = simpleExpr();
-        IdType aux = exprTail(lexpr);
-        
-        return aux != null ? aux : lexpr;
-    }
-
-    // expr-tail ::= relop simple-expr | lambda 
-    private IdType exprTail(IdType lexpr) {
-        // System.out.println("exprTail");
-        switch (current.type) {
-            case EQUAL:
-            case GREATER_THAN:
-            case GREATER_EQUAL:
-            case LOWER_THAN:
-            case LOWER_EQUAL:
-            case NOT_EQUAL:
-                relop();
-                IdType rexpr = simpleExpr();
-                try {
-                    lexpr = s.checkCompOp(lexpr, rexpr);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
+    // Precedence climbing over an explicit operator stack, leaving the type of
+    // the expression on the value stack. A simple-expr (relational == false)
+    // stops before a relop outside parentheses. Operands, reductions and
+    // errors happen in the same order as in the grammar, so diagnostics
+    // match the rules in Grammar. Returns false on a syntax error, with the
+    // value stack as it was on entry
+    private boolean expression(boolean relational) {
+        int base = vp;
+        int depth = 0;
+        op = 0;
+
+        for (;;) {
+            // Operand: open parentheses and at most one unary operator
+            // per factor, then an identifier or a constant
+            boolean unary = false;
+            for (;;) {
+                if (current == TokenType.OPEN_PAR) {
+                    pushOp(TokenType.OPEN_PAR.ordinal());
+                    depth++;
+                    unary = false;
+                } else if (!unary && (current == TokenType.NOT || current == TokenType.SUB)) {
+                    pushOp(-1 - current.ordinal());
+                    unary = true;
+                } else {
+                    break;
                 }
-                return lexpr;
-            case CLOSE_PAR:
-            case THEN:
-            case RETURN:
-            case SEMICOLON:
-            // case ADD:
-            // case SUB:
-            // case OR:
-            case END:
-            case ELSE:
-            case UNTIL:
-                return null;
-            default:
-                showError();
-                return null;
+                advance();
+            }
+
+            switch (current) {
+                case NAME:
+                    advance();
+                    leaf(NodeKind.VARIABLE, s.getVar(tokens.id(pos - 1), pos, pos - 1));
+                    break;
+                case INT_NUMBER:
+                    advance();
+                    leaf(NodeKind.CONSTANT, IdType.INT_NUMBER);
+                    break;
+                case REAL_NUMBER:
+                    advance();
+                    leaf(NodeKind.CONSTANT, IdType.REAL_NUMBER);
+                    break;
+                default:
+                    vp = base;
+                    return false;
+            }
+            unary();
+
+            // Operator: close parentheses until a binary operator
+            // continues the expression or something else ends it
+            for (;;) {
+                int prec = Grammar.PRECEDENCE[current.ordinal()];
+                if (prec == Grammar.RELATIONAL) {
+                    // Only one relop per expression, and none at the
+                    // top of a simple-expr
+                    reduce(Grammar.ADDITIVE);
+                    if (!relational && depth == 0 || op > 0 && ops[op - 1] >= 0
+                            && Grammar.PRECEDENCE[ops[op - 1]] == Grammar.RELATIONAL) {
+                        prec = 0;
+                    }
+                }
+                if (prec != 0) {
+                    reduce(prec);
+                    pushOp(current.ordinal());
+                    advance();
+                    break;
+                }
+
+                if ((Grammar.EXPRESSION_END & 1L << current.ordinal()) == 0) {
+                    vp = base;
+                    return false;
+                }
+                reduce(Grammar.RELATIONAL);
+                if (depth == 0) {
+                    return true;
+                }
+                if (current != TokenType.CLOSE_PAR) {
+                    vp = base;
+                    return false;
+                }
+                op--;
+                depth--;
+                advance();
+                unary();
+            }
         }
     }
 
-    // simple-expr ::= term simple
-    private IdType simpleExpr() {
-        // System.out.println("simpleExpr");
-        switch (current.type) {
-            case NAME:
-            case INT_NUMBER:
-            case REAL_NUMBER:
-            case OPEN_PAR:
-            case NOT:
-            case SUB:
-                IdType lexpr = term();
-                IdType aux = simple(lexpr);
-                return aux != null ? aux : lexpr;
-            default:
-                showError();
-                return null;
+    // Applies the binary operators on top of ops that bind at least as
+    // tightly as prec, stopping at an open parenthesis
+    private void reduce(int prec) {
+        while (op > 0 && ops[op - 1] >= 0 && Grammar.PRECEDENCE[ops[op - 1]] >= prec) {
+            int operator = ops[--op];
+            int right = trees[vp - 1];
+            IdType rexpr = popType();
+            int left = trees[vp - 1];
+            IdType lexpr = popType();
+            IdType type = null;
+            if (lexpr != null && rexpr != null) {
+                type = s.checkOp(lexpr, rexpr, TYPES[operator], pos, opTokens[op]);
+            }
+            push(type(type), node(NodeKind.BINARY, opTokens[op], type, left, right));
         }
     }
 
-    // simple ::= addop term simple | lambda
-    private IdType simple(IdType lexpr) {
-        // System.out.println("simple");
-        switch (current.type) {
-            case ADD:
-            case SUB:
-            case OR:
-                TokenType op = current.type;
-                addop();
-                IdType rexpr = term();
-                //System.out.println(lexpr + " " + rexpr + " " + op);
-                try {
-                    lexpr = s.checkOp(lexpr, rexpr, op);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
-                }
-                IdType aux = simple(lexpr);
-                return aux != null ? aux : lexpr;
-            case CLOSE_PAR:
-            case THEN:
-            case RETURN:
-            case SEMICOLON:
-            case EQUAL:
-            case GREATER_THAN:
-            case GREATER_EQUAL:
-            case LOWER_THAN:
-            case LOWER_EQUAL:
-            case NOT_EQUAL:
-            case END:
-            case ELSE:
-            case UNTIL:
-                return null;
-            default:
-                showError();
-                return null;
+    // Checks a pending unary operator against the factor just completed
+    private void unary() {
+        if (op > 0 && ops[op - 1] < 0) {
+            int operator = -1 - ops[--op];
+            IdType type = peekType();
+            if (type != null) {
+                type = s.checkUnaryOp(type, TYPES[operator], pos, opTokens[op]);
+            }
+            values[vp - 1] = type(type);
+            trees[vp - 1] = node(NodeKind.UNARY, opTokens[op], type, trees[vp - 1], Ast.NONE);
         }
     }
 
-    // term ::= factor-a term-tail
-    private IdType term() {
-        // System.out.println("term");
-        switch (current.type) {
-            case NOT:
-            case SUB:
-            case NAME:
-            case OPEN_PAR:
-            case INT_NUMBER:
-            case REAL_NUMBER:
-                IdType lexpr = factorA();
-                IdType aux = termTail(lexpr);
-                return aux != null ? aux : lexpr;
-            default:
-                showError();
-                return null;
+    // An operator node over its operand trees, none if one of them is missing
+    private int node(NodeKind kind, int token, IdType type, int first, int second) {
+        if (first == Ast.NONE || second == Ast.NONE && kind == NodeKind.BINARY) {
+            return Ast.NONE;
         }
+        int node = ast.add(kind, token, type);
+        ast.setFirstChild(node, first);
+        ast.setNextSibling(first, second);
+        return node;
     }
 
-    // term-tail ::= mulop factor-a term-tail | lambda
-    private IdType termTail(IdType lexpr) {
-        // System.out.println("termTail");
-        switch (current.type) {
-            case MUL:
-            case DIV:
-            case AND:
-                TokenType op = current.type;
-                mulop();
-                IdType rexpr = factorA();
-
-                try {
-                    lexpr = s.checkOp(lexpr, rexpr, op);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
-                }
-
-                IdType aux = termTail(lexpr);
-                return aux != null ? aux : lexpr;
-            case CLOSE_PAR:
-            case THEN:
-            case RETURN:
-            case SEMICOLON:
-            case EQUAL:
-            case GREATER_THAN:
-            case GREATER_EQUAL:
-            case LOWER_THAN:
-            case LOWER_EQUAL:
-            case NOT_EQUAL:
-            case ADD:
-            case SUB:
-            case OR:
-            case END:
-            case ELSE:
-            case UNTIL:
-                return null;
-            default:
-                showError();
-                return null;
+    // An operator on the current token
+    private void pushOp(int operator) {
+        if (op == ops.length) {
+            ops = Arrays.copyOf(ops, op * 2);
+            opTokens = Arrays.copyOf(opTokens, op * 2);
         }
+        opTokens[op] = pos;
+        ops[op++] = operator;
     }
 
-    // factor-a ::= factor | "!" factor | "-" factor
-    private IdType factorA() {
-        // System.out.println("factorA");
-        IdType type;
-        switch (current.type) {
-            case NAME:
-            case OPEN_PAR:
-            case INT_NUMBER:
-            case REAL_NUMBER:
-                type = factor();
-                return type;
-            case NOT:
-                advance();
-                type = factor();
-
-                try {
-                    s.isBoolean(type);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
-                }
-
-                return type;
-            case SUB:
-                advance();
-                type = factor();
-
-                try {
-                    s.checkUnaryOp(type);
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
-                }
-
-                return type;
-            default:
-                showError();
-                return null;
+    private void push(int value, int tree) {
+        if (vp == values.length) {
+            values = Arrays.copyOf(values, vp * 2);
+            trees = Arrays.copyOf(trees, vp * 2);
         }
+        trees[vp] = tree;
+        values[vp++] = value;
     }
 
-    // factor ::= identifier | constant | "(" expression ")"
-    private IdType factor() {
-        // System.out.println("factor");
-        IdType type = null;
-        switch (current.type) {
-            case NAME:
-                String id = current.token;
-                advance();
-            
-                try {
-                    type = s.getVar(id).type;
-                } catch (SemanticException e) {
-                    showError(e.getMessage());
-                }
+    // An operand on the token just read
+    private void leaf(NodeKind kind, IdType type) {
+        push(type(type), ast.add(kind, pos - 1, type));
+    }
 
-                return type;
-            case INT_NUMBER:
-                constant();
-                type = IdType.INT_NUMBER;
-                return type;
-            case REAL_NUMBER:
-                constant();
-                type = IdType.REAL_NUMBER;
-                return type;
-            case OPEN_PAR:
-                advance();
-                type = expr();
-                eat(TokenType.CLOSE_PAR);
-                return type;
-            default:
-                showError();
-                return null;
+    // A new child of the innermost open node
+    private void append(int node) {
+        int tail = tails[depth - 1];
+        if (tail == Ast.NONE) {
+            ast.setFirstChild(open[depth - 1], node);
+        } else {
+            ast.setNextSibling(tail, node);
         }
+        tails[depth - 1] = node;
     }
 
-    // addop ::= ADD |  SUB | OR
-    private void addop() {
-        // System.out.println("addop");
-        switch (current.type) {
-            case ADD:
-            case SUB:
-            case OR:
-                advance();
-                break;
-            default:
-                showError();
-                break;
+    private void attach(int tree) {
+        if (tree != Ast.NONE) {
+            append(tree);
         }
     }
 
-    // relop ::= EQUAL | GREATER_THAN | LOWER_THAN | LOWER_EQUAL | GREATER_EQUAL | NOT_EQUAL
-    private void relop() {
-        // System.out.println("relop");
-        switch (current.type) {
-            case EQUAL:
-            case GREATER_THAN:
-            case GREATER_EQUAL:
-            case LOWER_THAN:
-            case LOWER_EQUAL:
-            case NOT_EQUAL:
-                advance();
-                break;
-            default:
-                showError();
-                break;
+    private void begin(NodeKind kind) {
+        int node = ast.add(kind, pos, null);
+        append(node);
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            tails = Arrays.copyOf(tails, depth * 2);
         }
+        open[depth] = node;
+        tails[depth++] = Ast.NONE;
     }
 
-    // mulop ::= MUL | DIV | AND
-    private void mulop() {
-        // System.out.println("mulop");
-        switch (current.type) {
-            case MUL:
-            case DIV:
-            case AND:
-                advance();
-                break;
-            default:
-                showError();
-                break;
-        }
+    // The value of a type, UNKNOWN for null
+    private static int type(IdType type) {
+        return type == null ? UNKNOWN : type.ordinal();
     }
 
-    // constant ::= INTEGER | REAL
-    private void constant() {
-        // System.out.println("constant");
-        switch (current.type) {
-            case INT_NUMBER:
-            case REAL_NUMBER:
-                advance();
-                break;
-            default:
-                showError();
-                break;
-        }
+    // null for UNKNOWN
+    private IdType peekType() {
+        int type = values[vp - 1];
+        return type == UNKNOWN ? null : ID_TYPES[type];
+    }
+
+    private IdType popType() {
+        int type = values[--vp];
+        return type == UNKNOWN ? null : ID_TYPES[type];
     }
 }
\ No newline at end of file
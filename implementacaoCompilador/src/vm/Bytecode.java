@@ -0,0 +1,100 @@
+package vm;
+
+// The VM's instruction set. An instruction is an opcode followed by its
+// operands in Program.code. Registers are indexes into one of two banks:
+// I (long[]) for integers and booleans (0 or 1), R (double[]) for reals.
+// Each bank holds the variables by declaration slot, then the constants,
+// then temporaries. Jump targets are code offsets
+final class Bytecode {
+
+    static final int HALT = 0;      //
+    static final int JUMP = 1;      // target
+    static final int JZ = 2;        // I[a] == 0: a target
+    static final int JNZ = 3;       // I[a] != 0: a target
+    static final int MOV_I = 4;     // I[d] = I[a]
+    static final int MOV_R = 5;     // R[d] = R[a]
+    static final int I2R = 6;       // R[d] = I[a]
+    static final int ADD_I = 7;     // I[d] = I[a] + I[b]
+    static final int SUB_I = 8;
+    static final int MUL_I = 9;
+    static final int NEG_I = 10;    // I[d] = -I[a]
+    static final int ADD_R = 11;    // R[d] = R[a] + R[b]
+    static final int SUB_R = 12;
+    static final int MUL_R = 13;
+    static final int DIV_R = 14;
+    static final int NEG_R = 15;    // R[d] = -R[a]
+    static final int NOT = 16;      // I[d] = 1 - I[a]
+    static final int AND = 17;      // I[d] = I[a] & I[b]
+    static final int OR = 18;       // I[d] = I[a] | I[b]
+
+    // Comparisons in the order EQ, NE, LT, GT, LE, GE (see relation()):
+    // CMP_I/CMP_R + relation sets I[d] to 0 or 1 from two integers or reals;
+    // JNOT_I/JNOT_R + relation jumps when a relation between I[a], I[b] or
+    // R[a], R[b] does not hold: a b target
+    static final int CMP_I = 19;
+    static final int CMP_R = 25;
+    static final int JNOT_I = 31;
+    static final int JNOT_R = 37;
+
+    static final int READ_I = 43;   // I[d] = next integer of the input
+    static final int READ_R = 44;   // R[d] = next real of the input
+    static final int WRITE_I = 45;  // I[a]
+    static final int WRITE_R = 46;  // R[a]
+    static final int WRITE_B = 47;  // I[a] as a boolean
+    static final int WRITE_T = 48;  // texts[k]
+    static final int OPCODES = 49;
+
+    static final int EQ = 0;
+    static final int NE = 1;
+    static final int LT = 2;
+    static final int GT = 3;
+    static final int LE = 4;
+    static final int GE = 5;
+
+    // Operands per opcode
+    static final byte[] OPERANDS = new byte[OPCODES];
+    static final String[] NAMES = new String[OPCODES];
+
+    static {
+        define(HALT, "halt", 0);
+        define(JUMP, "jump", 1);
+        define(JZ, "jz", 2);
+        define(JNZ, "jnz", 2);
+        define(MOV_I, "mov.i", 2);
+        define(MOV_R, "mov.r", 2);
+        define(I2R, "i2r", 2);
+        define(ADD_I, "add.i", 3);
+        define(SUB_I, "sub.i", 3);
+        define(MUL_I, "mul.i", 3);
+        define(NEG_I, "neg.i", 2);
+        define(ADD_R, "add.r", 3);
+        define(SUB_R, "sub.r", 3);
+        define(MUL_R, "mul.r", 3);
+        define(DIV_R, "div.r", 3);
+        define(NEG_R, "neg.r", 2);
+        define(NOT, "not", 2);
+        define(AND, "and", 3);
+        define(OR, "or", 3);
+        String[] relations = { "eq", "ne", "lt", "gt", "le", "ge" };
+        for (int rel = EQ; rel <= GE; rel++) {
+            define(CMP_I + rel, relations[rel] + ".i", 3);
+            define(CMP_R + rel, relations[rel] + ".r", 3);
+            define(JNOT_I + rel, "jn" + relations[rel] + ".i", 3);
+            define(JNOT_R + rel, "jn" + relations[rel] + ".r", 3);
+        }
+        define(READ_I, "read.i", 1);
+        define(READ_R, "read.r", 1);
+        define(WRITE_I, "write.i", 1);
+        define(WRITE_R, "write.r", 1);
+        define(WRITE_B, "write.b", 1);
+        define(WRITE_T, "write.t", 1);
+    }
+
+    private Bytecode() {
+    }
+
+    private static void define(int opcode, String name, int operands) {
+        NAMES[opcode] = name;
+        OPERANDS[opcode] = (byte) operands;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package vm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Class files of programs compiled before, in a directory, one per source
+// and optimization level, named after their SHA-256. Only programs without
+// errors get a class, so a hit can skip the compiler altogether. A class is
+// written to a temporary file and renamed, so concurrent runs never see
+// half of one
+public final class ClassCache {
+
+    // Part of every key: change it whenever ClassGenerator's output does
+    private static final String FORMAT = "2";
+
+    private final Path dir;
+    private final int level;
+
+    public ClassCache(Path dir, int level) {
+        this.dir = dir;
+        this.level = level;
+    }
+
+    // The class compiled from source, or null if there is none
+    public byte[] get(byte[] source) {
+        try {
+            return Files.readAllBytes(file(source));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void put(byte[] source, byte[] classFile) {
+        Path file = file(source);
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, null, ".tmp");
+            try {
+                Files.write(temp, classFile);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path file(byte[] source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((FORMAT + "-O" + level).getBytes());
+        byte[] hash = digest.digest(source);
+        StringBuilder name = new StringBuilder(hash.length * 2 + 6);
+        for (byte b : hash) {
+            name.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return dir.resolve(name.append(".class").toString());
+    }
+}
\ No newline at end of file
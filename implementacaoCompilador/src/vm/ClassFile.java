@@ -0,0 +1,177 @@
+package vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// The parts of a class file ClassGenerator needs: a constant pool with
+// equal entries shared, and a final class with a single static method
+final class ClassFile {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    // Java 5, the last version the verifier accepts without StackMapTable
+    private static final int VERSION = 49;
+
+    private static final int UTF8 = 1;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int METHOD = 10;
+    private static final int INTERFACE_METHOD = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(bytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+    private boolean tooLong;
+
+    int utf8(String value) {
+        Integer index = entries.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(UTF8);
+            pool.writeUTF(value);
+        } catch (UTFDataFormatException e) {
+            // Longer than 65535 bytes: no class file can hold it
+            tooLong = true;
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add("U" + value, 1);
+    }
+
+    int classRef(String name) {
+        return reference("C" + name, CLASS, utf8(name));
+    }
+
+    int string(String value) {
+        return reference("S" + value, STRING, utf8(value));
+    }
+
+    int longConstant(long value) {
+        Integer index = entries.get("J" + value);
+        if (index != null) {
+            return index;
+        }
+        write(LONG, value);
+        return add("J" + value, 2);
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        Integer index = entries.get("D" + bits);
+        if (index != null) {
+            return index;
+        }
+        write(DOUBLE, bits);
+        return add("D" + bits, 2);
+    }
+
+    int method(String owner, String name, String descriptor, boolean isInterface) {
+        String key = (isInterface ? "I" : "M") + owner + '.' + name + descriptor;
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        int type = reference("N" + name + descriptor, NAME_AND_TYPE, utf8(name), utf8(descriptor));
+        return reference(key, isInterface ? INTERFACE_METHOD : METHOD, classRef(owner), type);
+    }
+
+    // A public final class extending Object with the one public static
+    // method given by name, descriptor and Code attribute
+    byte[] toBytes(String className, String methodName, String descriptor,
+            byte[] code, int codeLength, int maxStack, int maxLocals) {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int name = utf8(methodName);
+        int type = utf8(descriptor);
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.size() + codeLength + 64);
+        DataOutputStream file = new DataOutputStream(out);
+        try {
+            file.writeInt(MAGIC);
+            file.writeShort(0);
+            file.writeShort(VERSION);
+            file.writeShort(count);
+            bytes.writeTo(file);
+            file.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            file.writeShort(thisClass);
+            file.writeShort(superClass);
+            file.writeShort(0);
+            file.writeShort(0);
+
+            file.writeShort(1);
+            file.writeShort(ACC_PUBLIC | ACC_STATIC);
+            file.writeShort(name);
+            file.writeShort(type);
+            file.writeShort(1);
+            file.writeShort(codeName);
+            file.writeInt(12 + codeLength);
+            file.writeShort(maxStack);
+            file.writeShort(maxLocals);
+            file.writeInt(codeLength);
+            file.write(code, 0, codeLength);
+            file.writeShort(0);
+            file.writeShort(0);
+
+            file.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Whether the pool still fits its 16-bit indexes and lengths
+    boolean fits() {
+        return count <= 0xFFFF && !tooLong;
+    }
+
+    private int reference(String key, int tag, int first, int... rest) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            for (int value : rest) {
+                pool.writeShort(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return add(key, 1);
+    }
+
+    private void write(int tag, long value) {
+        try {
+            pool.writeByte(tag);
+            pool.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Long and double entries take two indexes
+    private int add(String key, int slots) {
+        int index = count;
+        entries.put(key, index);
+        count += slots;
+        return index;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,348 @@
+package vm;
+
+import java.util.Arrays;
+
+// Lowers Ir to a JVM class with a single method, public static void
+// run(Io), that HotSpot interprets and compiles like any other. Variables
+// and temporaries are locals of the method, a long or a double each, with
+// temporaries sharing slots as Ir.allocate() says; constants are loaded
+// from the constant pool. Every instruction loads its operands, computes
+// and stores its result, and Ir's jumps become branches.
+//
+// The class file is version 49, so the verifier infers the types itself
+// and no stack map frames are needed. HotSpot never compiles a method with
+// more than 8000 bytes of code (HugeMethodLimit), so a bigger program
+// would only be interpreted, slower than on VirtualMachine: generate()
+// returns null for it, and the VM runs it instead
+public class ClassGenerator {
+
+    public static final String CLASS_NAME = "vm/Programa";
+    static final String METHOD_NAME = "run";
+    static final String DESCRIPTOR = "(Lvm/Io;)V";
+
+    private static final String IO = "vm/Io";
+    private static final int MAX_CODE = 8000;
+
+    private static final int LCONST_0 = 9;
+    private static final int LCONST_1 = 10;
+    private static final int DCONST_0 = 14;
+    private static final int DCONST_1 = 15;
+    private static final int LDC_W = 19;
+    private static final int LDC2_W = 20;
+    private static final int LLOAD = 22;
+    private static final int DLOAD = 24;
+    private static final int ALOAD_0 = 42;
+    private static final int LSTORE = 55;
+    private static final int DSTORE = 57;
+    private static final int LADD = 97;
+    private static final int DADD = 99;
+    private static final int LSUB = 101;
+    private static final int DSUB = 103;
+    private static final int LMUL = 105;
+    private static final int DMUL = 107;
+    private static final int DDIV = 111;
+    private static final int LNEG = 117;
+    private static final int DNEG = 119;
+    private static final int LAND = 127;
+    private static final int LOR = 129;
+    private static final int LXOR = 131;
+    private static final int L2I = 136;
+    private static final int L2D = 138;
+    private static final int LCMP = 148;
+    private static final int DCMPL = 151;
+    private static final int DCMPG = 152;
+    private static final int IFEQ = 153;
+    private static final int IFNE = 154;
+    private static final int IFLT = 155;
+    private static final int IFGE = 156;
+    private static final int IFGT = 157;
+    private static final int IFLE = 158;
+    private static final int GOTO = 167;
+    private static final int RETURN = 177;
+    private static final int INVOKEINTERFACE = 185;
+    private static final int WIDE = 196;
+
+    // Branch on the result of lcmp, dcmpl or dcmpg when the Bytecode
+    // relation does not hold
+    private static final int[] IF_FAILS = { IFNE, IFEQ, IFGE, IFLE, IFGT, IFLT };
+
+    private final Ir ir;
+    private final ClassFile classFile = new ClassFile();
+
+    // First local of each kind of operand, per bank; slot 0 is the Io and
+    // every local takes two slots
+    private final int[] variableBase = new int[2];
+    private final int[] temporaryBase = new int[2];
+    private int[][] temporaryRegister;
+    private int locals;
+
+    private byte[] code = new byte[1024];
+    private int pc;
+    private int depth;
+    private int maxDepth;
+
+    public ClassGenerator(Ir ir) {
+        this.ir = ir;
+    }
+
+    // The class file, or null if the program is too big to be compiled
+    public byte[] generate() {
+        int[] peak = new int[2];
+        temporaryRegister = ir.allocate(peak);
+        variableBase[Ir.INT] = 1;
+        variableBase[Ir.REAL] = variableBase[Ir.INT] + 2 * ir.variables[Ir.INT];
+        temporaryBase[Ir.INT] = variableBase[Ir.REAL] + 2 * ir.variables[Ir.REAL];
+        temporaryBase[Ir.REAL] = temporaryBase[Ir.INT] + 2 * peak[Ir.INT];
+        locals = temporaryBase[Ir.REAL] + 2 * peak[Ir.REAL];
+
+        // Every variable starts at zero: the verifier does not know the
+        // assignment rules, only that a local is set before it is read.
+        // Temporaries are always written first in their block
+        for (int bank = Ir.INT; bank <= Ir.REAL; bank++) {
+            for (int v = 0; v < ir.variables[bank]; v++) {
+                push(bank == Ir.REAL ? DCONST_0 : LCONST_0, 2);
+                store(Ir.operand(Ir.VARIABLE, v, bank));
+            }
+        }
+
+        int[] blockPc = new int[ir.blocks + 1];
+        int[] sites = new int[16];
+        int[] targets = new int[16];
+        int jumps = 0;
+        for (int k = 0; k < ir.blocks; k++) {
+            blockPc[k] = pc;
+            for (int i = ir.blockStart[k]; i < ir.blockStart[k + 1]; i++) {
+                instruction(i);
+                if (Ir.jumps(ir.op[i])) {
+                    if (jumps == sites.length) {
+                        sites = Arrays.copyOf(sites, jumps * 2);
+                        targets = Arrays.copyOf(targets, jumps * 2);
+                    }
+                    // The branch was the last thing emitted
+                    sites[jumps] = pc - 3;
+                    targets[jumps++] = ir.target[i];
+                }
+            }
+        }
+        blockPc[ir.blocks] = pc;
+        boolean fits = pc <= MAX_CODE && locals <= 0xFFFF && classFile.fits();
+        for (int j = 0; j < jumps && fits; j++) {
+            int offset = blockPc[targets[j]] - sites[j];
+            fits = offset == (short) offset;
+            code[sites[j] + 1] = (byte) (offset >> 8);
+            code[sites[j] + 2] = (byte) offset;
+        }
+        if (!fits) {
+            return null;
+        }
+        return classFile.toBytes(CLASS_NAME, METHOD_NAME, DESCRIPTOR, code, pc, maxDepth, locals);
+    }
+
+    private void instruction(int i) {
+        int op = ir.op[i];
+        int a = ir.a[i];
+        int b = ir.b[i];
+        switch (op) {
+            case Bytecode.HALT:
+                push(RETURN, 0);
+                break;
+            case Bytecode.JUMP:
+                branch(GOTO, 0);
+                break;
+            case Bytecode.JZ:
+            case Bytecode.JNZ:
+                load(a);
+                push(LCONST_0, 2);
+                push(LCMP, -3);
+                branch(op == Bytecode.JZ ? IFEQ : IFNE, -1);
+                break;
+            case Bytecode.MOV_I:
+            case Bytecode.MOV_R:
+                load(a);
+                store(ir.d[i]);
+                break;
+            case Bytecode.I2R:
+                load(a);
+                push(L2D, 0);
+                store(ir.d[i]);
+                break;
+            case Bytecode.NEG_I:
+            case Bytecode.NEG_R:
+                load(a);
+                push(op == Bytecode.NEG_R ? DNEG : LNEG, 0);
+                store(ir.d[i]);
+                break;
+            case Bytecode.NOT:
+                load(a);
+                push(LCONST_1, 2);
+                push(LXOR, -2);
+                store(ir.d[i]);
+                break;
+            case Bytecode.READ_I:
+            case Bytecode.READ_R:
+                boolean real = op == Bytecode.READ_R;
+                push(ALOAD_0, 1);
+                invoke(real ? "readReal" : "readInt", real ? "()D" : "()J", 1, 2);
+                store(ir.d[i]);
+                break;
+            case Bytecode.WRITE_I:
+            case Bytecode.WRITE_R:
+                push(ALOAD_0, 1);
+                load(a);
+                invoke(op == Bytecode.WRITE_R ? "writeReal" : "writeInt", op == Bytecode.WRITE_R ? "(D)V" : "(J)V", 3, 0);
+                break;
+            case Bytecode.WRITE_B:
+                push(ALOAD_0, 1);
+                load(a);
+                push(L2I, -1);
+                invoke("writeBoolean", "(Z)V", 2, 0);
+                break;
+            case Bytecode.WRITE_T:
+                push(ALOAD_0, 1);
+                push(LDC_W, 1);
+                u2(classFile.string(ir.texts.get(a)));
+                invoke("writeText", "(Ljava/lang/String;)V", 2, 0);
+                break;
+            default:
+                load(a);
+                load(b);
+                if (op >= Bytecode.JNOT_I) {
+                    int relation = (op - Bytecode.JNOT_I) % (Bytecode.JNOT_R - Bytecode.JNOT_I);
+                    compare(relation, op >= Bytecode.JNOT_R);
+                    branch(IF_FAILS[relation], -1);
+                } else if (op >= Bytecode.CMP_I) {
+                    // A comparison as a value: 1 if it holds, else 0
+                    int relation = (op - Bytecode.CMP_I) % (Bytecode.CMP_R - Bytecode.CMP_I);
+                    compare(relation, op >= Bytecode.CMP_R);
+                    push(IF_FAILS[relation], -1);
+                    u2(7);
+                    push(LCONST_1, 2);
+                    push(GOTO, 0);
+                    u2(4);
+                    depth -= 2;
+                    push(LCONST_0, 2);
+                    store(ir.d[i]);
+                } else {
+                    push(arithmetic(op), -2);
+                    store(ir.d[i]);
+                }
+                break;
+        }
+    }
+
+    private static int arithmetic(int op) {
+        switch (op) {
+            case Bytecode.ADD_I:
+                return LADD;
+            case Bytecode.SUB_I:
+                return LSUB;
+            case Bytecode.MUL_I:
+                return LMUL;
+            case Bytecode.ADD_R:
+                return DADD;
+            case Bytecode.SUB_R:
+                return DSUB;
+            case Bytecode.MUL_R:
+                return DMUL;
+            case Bytecode.DIV_R:
+                return DDIV;
+            case Bytecode.AND:
+                return LAND;
+            default:
+                return LOR;
+        }
+    }
+
+    // Compares the two values on the stack, leaving -1, 0 or 1. Which of
+    // dcmpl and dcmpg is used makes a NaN fail every relation but !=, as in
+    // Java
+    private void compare(int relation, boolean real) {
+        if (real) {
+            push(relation == Bytecode.LT || relation == Bytecode.LE ? DCMPG : DCMPL, -3);
+        } else {
+            push(LCMP, -3);
+        }
+    }
+
+    // A branch whose offset is filled in once the blocks are placed
+    private void branch(int opcode, int delta) {
+        push(opcode, delta);
+        u2(0);
+    }
+
+    private void load(int operand) {
+        boolean real = Ir.bank(operand) == Ir.REAL;
+        if (Ir.kind(operand) != Ir.CONSTANT) {
+            local(real ? DLOAD : LLOAD, slot(operand), 2);
+        } else if (real) {
+            double value = ir.realValue(operand);
+            if (Double.doubleToRawLongBits(value) == 0) {
+                push(DCONST_0, 2);
+            } else if (value == 1) {
+                push(DCONST_1, 2);
+            } else {
+                push(LDC2_W, 2);
+                u2(classFile.doubleConstant(value));
+            }
+        } else {
+            long value = ir.intValue(operand);
+            if (value == 0 || value == 1) {
+                push(value == 0 ? LCONST_0 : LCONST_1, 2);
+            } else {
+                push(LDC2_W, 2);
+                u2(classFile.longConstant(value));
+            }
+        }
+    }
+
+    private void store(int operand) {
+        local(Ir.bank(operand) == Ir.REAL ? DSTORE : LSTORE, slot(operand), -2);
+    }
+
+    private int slot(int operand) {
+        int bank = Ir.bank(operand);
+        if (Ir.kind(operand) == Ir.VARIABLE) {
+            return variableBase[bank] + 2 * Ir.index(operand);
+        }
+        return temporaryBase[bank] + 2 * temporaryRegister[bank][Ir.index(operand)];
+    }
+
+    private void invoke(String name, String descriptor, int arguments, int result) {
+        int method = classFile.method(IO, name, descriptor, true);
+        push(INVOKEINTERFACE, result - arguments);
+        u2(method);
+        u1(arguments);
+        u1(0);
+    }
+
+    // A load or store of a local, wide when its slot needs two bytes
+    private void local(int opcode, int slot, int delta) {
+        if (slot > 0xFF) {
+            u1(WIDE);
+            push(opcode, delta);
+            u2(slot);
+        } else {
+            push(opcode, delta);
+            u1(slot);
+        }
+    }
+
+    // An instruction that changes the stack by delta slots
+    private void push(int opcode, int delta) {
+        u1(opcode);
+        depth += delta;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void u1(int value) {
+        if (pc == code.length) {
+            code = Arrays.copyOf(code, pc * 2);
+        }
+        code[pc++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+}
\ No newline at end of file
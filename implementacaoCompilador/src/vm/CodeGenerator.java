@@ -0,0 +1,130 @@
+package vm;
+
+import java.util.Arrays;
+
+// Lowers Ir to bytecode for VirtualMachine.
+//
+// Registers are laid out per bank as the variables in declaration order,
+// then one per constant the code still reads, then the temporaries, which
+// share registers as Ir.allocate() says. Jumps get their offsets once
+// every block has one
+public class CodeGenerator {
+
+    private final Ir ir;
+
+    // Register per constant index, per bank, -1 for those no longer read
+    private final int[][] constantRegister;
+    private final int[] next = new int[2];
+    private long[] ints;
+    private double[] reals;
+
+    private final int[] temporaryBase = new int[2];
+    private int[][] temporaryRegister;
+
+    private int[] code = new int[256];
+    private int pc;
+
+    public CodeGenerator(Ir ir) {
+        this.ir = ir;
+        this.constantRegister = new int[][] { new int[ir.constants[Ir.INT]], new int[ir.constants[Ir.REAL]] };
+    }
+
+    public Program generate() {
+        ints = new long[ir.variables[Ir.INT] + ir.constants[Ir.INT]];
+        reals = new double[ir.variables[Ir.REAL] + ir.constants[Ir.REAL]];
+        next[Ir.INT] = ir.variables[Ir.INT];
+        next[Ir.REAL] = ir.variables[Ir.REAL];
+        Arrays.fill(constantRegister[Ir.INT], -1);
+        Arrays.fill(constantRegister[Ir.REAL], -1);
+        for (int i = 0; i < ir.size; i++) {
+            int reads = Ir.reads(ir.op[i]);
+            if (reads >= 1) {
+                constant(ir.a[i]);
+            }
+            if (reads == 2) {
+                constant(ir.b[i]);
+            }
+        }
+        int[] peak = new int[2];
+        temporaryRegister = ir.allocate(peak);
+        temporaryBase[Ir.INT] = next[Ir.INT];
+        temporaryBase[Ir.REAL] = next[Ir.REAL];
+
+        // Offset of each block, and where each jump's target goes
+        int[] blockPc = new int[ir.blocks + 1];
+        int[] sites = new int[16];
+        int[] targets = new int[16];
+        int jumps = 0;
+        for (int k = 0; k < ir.blocks; k++) {
+            blockPc[k] = pc;
+            for (int i = ir.blockStart[k]; i < ir.blockStart[k + 1]; i++) {
+                int op = ir.op[i];
+                emit(op);
+                if (Ir.defines(op)) {
+                    emit(register(ir.d[i]));
+                }
+                if (op == Bytecode.WRITE_T) {
+                    emit(ir.a[i]);
+                }
+                int reads = Ir.reads(op);
+                if (reads >= 1) {
+                    emit(register(ir.a[i]));
+                }
+                if (reads == 2) {
+                    emit(register(ir.b[i]));
+                }
+                if (Ir.jumps(op)) {
+                    if (jumps == sites.length) {
+                        sites = Arrays.copyOf(sites, jumps * 2);
+                        targets = Arrays.copyOf(targets, jumps * 2);
+                    }
+                    sites[jumps] = pc;
+                    targets[jumps++] = ir.target[i];
+                    emit(0);
+                }
+            }
+        }
+        blockPc[ir.blocks] = pc;
+        for (int j = 0; j < jumps; j++) {
+            code[sites[j]] = blockPc[targets[j]];
+        }
+
+        long[] intBank = Arrays.copyOf(ints, temporaryBase[Ir.INT] + peak[Ir.INT]);
+        double[] realBank = Arrays.copyOf(reals, temporaryBase[Ir.REAL] + peak[Ir.REAL]);
+        return new Program(Arrays.copyOf(code, pc), intBank, realBank, ir.texts.toArray(new String[0]));
+    }
+
+    // Gives a constant its register the first time it is read
+    private void constant(int operand) {
+        int bank = Ir.bank(operand);
+        if (Ir.kind(operand) != Ir.CONSTANT || constantRegister[bank][Ir.index(operand)] >= 0) {
+            return;
+        }
+        int register = next[bank]++;
+        constantRegister[bank][Ir.index(operand)] = register;
+        if (bank == Ir.INT) {
+            ints[register] = ir.intValue(operand);
+        } else {
+            reals[register] = ir.realValue(operand);
+        }
+    }
+
+    private int register(int operand) {
+        int bank = Ir.bank(operand);
+        switch (Ir.kind(operand)) {
+            case Ir.VARIABLE:
+                return Ir.index(operand);
+            case Ir.CONSTANT:
+                return constantRegister[bank][Ir.index(operand)];
+            default:
+                return temporaryBase[bank] + temporaryRegister[bank][Ir.index(operand)];
+        }
+    }
+
+    private void emit(int word) {
+        if (pc == code.length) {
+            code = Arrays.copyOf(code, pc * 2);
+        }
+        code[pc++] = word;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package vm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// A class from ClassGenerator, defined as a hidden class of this package:
+// it has no name other code can resolve and is unloaded with the instance
+public final class CompiledProgram {
+
+    private final MethodHandle run;
+
+    private CompiledProgram(MethodHandle run) {
+        this.run = run;
+    }
+
+    // Throws LinkageError if the bytes are not a valid class
+    public static CompiledProgram define(byte[] classFile) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            MethodType type = MethodType.methodType(void.class, Io.class);
+            return new CompiledProgram(lookup.findStatic(lookup.lookupClass(), ClassGenerator.METHOD_NAME, type));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IncompatibleClassChangeError(e.getMessage());
+        }
+    }
+
+    public void run(Io io) {
+        try {
+            run.invokeExact(io);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        } finally {
+            io.flush();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package vm;
+
+// Where read() takes its numbers from and write() sends its values to.
+// Each write is one line
+public interface Io {
+
+    long readInt();
+
+    double readReal();
+
+    void writeInt(long value);
+
+    void writeReal(double value);
+
+    void writeBoolean(boolean value);
+
+    void writeText(String text);
+
+    void flush();
+}
\ No newline at end of file
@@ -0,0 +1,425 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Three-address code between the tree and the backends: IrBuilder makes it,
+// Optimizer rewrites it in place, CodeGenerator and ClassGenerator lower it.
+// Like Ast it is kept as parallel arrays. Instruction i is a Bytecode
+// opcode op[i] with a destination d[i], operands a[i] and b[i] and a target
+// block, each present as the opcode needs (see Bytecode); a WRITE_T's a is
+// the index of its text.
+//
+// Blocks are runs of instructions laid out in order. A block runs into the
+// next one unless it ends in a jump, and a jump names the block it goes to.
+//
+// An operand is a variable, a constant or a temporary, in the integer or
+// the real bank. A temporary is written by exactly one instruction and read
+// only after it in the same block
+public final class Ir {
+
+    static final int INT = 0;
+    static final int REAL = 1;
+
+    static final int VARIABLE = 0;
+    static final int CONSTANT = 1;
+    static final int TEMPORARY = 2;
+
+    // No operand, target or block
+    static final int NONE = -1;
+    // An instruction Optimizer removed, dropped by compact()
+    static final int NOP = -1;
+
+    // Per opcode: whether it writes d, how many of a and b it reads, and
+    // whether it ends its block with a jump
+    private static final boolean[] DEFINES = new boolean[Bytecode.OPCODES];
+    private static final byte[] READS = new byte[Bytecode.OPCODES];
+    private static final boolean[] JUMPS = new boolean[Bytecode.OPCODES];
+
+    static {
+        for (int op = Bytecode.MOV_I; op < Bytecode.JNOT_I; op++) {
+            DEFINES[op] = true;
+            READS[op] = Bytecode.OPERANDS[op] == 3 ? (byte) 2 : (byte) 1;
+        }
+        for (int op = Bytecode.JNOT_I; op < Bytecode.READ_I; op++) {
+            READS[op] = 2;
+            JUMPS[op] = true;
+        }
+        DEFINES[Bytecode.READ_I] = true;
+        DEFINES[Bytecode.READ_R] = true;
+        READS[Bytecode.WRITE_I] = 1;
+        READS[Bytecode.WRITE_R] = 1;
+        READS[Bytecode.WRITE_B] = 1;
+        READS[Bytecode.JZ] = 1;
+        READS[Bytecode.JNZ] = 1;
+        JUMPS[Bytecode.JUMP] = true;
+        JUMPS[Bytecode.JZ] = true;
+        JUMPS[Bytecode.JNZ] = true;
+    }
+
+    int[] op = new int[256];
+    int[] d = new int[256];
+    int[] a = new int[256];
+    int[] b = new int[256];
+    int[] target = new int[256];
+    int size;
+
+    // blockStart[k]..blockStart[k + 1] are block k's instructions
+    int[] blockStart = new int[65];
+    int blocks;
+
+    // Per bank: variables, then temporaries so far
+    final int[] variables = new int[2];
+    final int[] temporaries = new int[2];
+
+    // Constants by index, per bank, each value once
+    long[] ints = new long[16];
+    double[] reals = new double[16];
+    final int[] constants = new int[2];
+    private final Map<Long, Integer> intIndex = new HashMap<>();
+    private final Map<Long, Integer> realIndex = new HashMap<>();
+
+    final List<String> texts = new ArrayList<>();
+
+    // Instructions insert() keeps for splice(): each goes into a block,
+    // before the instruction at (that block's end, if at is where it ends)
+    private int[] addAt = new int[16];
+    private int[] addBlock = new int[16];
+    private int[] addOp = new int[16];
+    private int[] addD = new int[16];
+    private int[] addA = new int[16];
+    private int[] addB = new int[16];
+    private int added;
+
+    Ir() {
+    }
+
+    // Instructions, once compacted
+    public int size() {
+        return size;
+    }
+
+    static int operand(int kind, int index, int bank) {
+        return index << 3 | kind << 1 | bank;
+    }
+
+    static int kind(int operand) {
+        return operand >> 1 & 3;
+    }
+
+    static int index(int operand) {
+        return operand >>> 3;
+    }
+
+    static int bank(int operand) {
+        return operand & 1;
+    }
+
+    static boolean defines(int op) {
+        return op >= 0 && DEFINES[op];
+    }
+
+    static int reads(int op) {
+        return op < 0 ? 0 : READS[op];
+    }
+
+    static boolean jumps(int op) {
+        return op >= 0 && JUMPS[op];
+    }
+
+    // Has no effect but writing d, so it can go if nothing reads d
+    static boolean pure(int op) {
+        return defines(op) && op != Bytecode.READ_I && op != Bytecode.READ_R;
+    }
+
+    int variable(int index, int bank) {
+        variables[bank] = Math.max(variables[bank], index + 1);
+        return operand(VARIABLE, index, bank);
+    }
+
+    int temporary(int bank) {
+        return operand(TEMPORARY, temporaries[bank]++, bank);
+    }
+
+    int constant(long value) {
+        Integer index = intIndex.get(value);
+        if (index == null) {
+            if (constants[INT] == ints.length) {
+                ints = Arrays.copyOf(ints, constants[INT] * 2);
+            }
+            index = constants[INT]++;
+            ints[index] = value;
+            intIndex.put(value, index);
+        }
+        return operand(CONSTANT, index, INT);
+    }
+
+    int constant(double value) {
+        long bits = Double.doubleToLongBits(value);
+        Integer index = realIndex.get(bits);
+        if (index == null) {
+            if (constants[REAL] == reals.length) {
+                reals = Arrays.copyOf(reals, constants[REAL] * 2);
+            }
+            index = constants[REAL]++;
+            reals[index] = value;
+            realIndex.put(bits, index);
+        }
+        return operand(CONSTANT, index, REAL);
+    }
+
+    long intValue(int operand) {
+        return ints[index(operand)];
+    }
+
+    double realValue(int operand) {
+        return reals[index(operand)];
+    }
+
+    int text(String text) {
+        texts.add(text);
+        return texts.size() - 1;
+    }
+
+    int add(int opcode, int dest, int first, int second, int to) {
+        if (size == op.length) {
+            int capacity = size * 2;
+            op = Arrays.copyOf(op, capacity);
+            d = Arrays.copyOf(d, capacity);
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            target = Arrays.copyOf(target, capacity);
+        }
+        op[size] = opcode;
+        d[size] = dest;
+        a[size] = first;
+        b[size] = second;
+        target[size] = to;
+        return size++;
+    }
+
+    // The block the next instruction goes into: the current one while it is
+    // empty, a new one otherwise
+    int startBlock() {
+        if (blocks > 0 && blockStart[blocks - 1] == size) {
+            return blocks - 1;
+        }
+        if (blocks + 1 == blockStart.length) {
+            blockStart = Arrays.copyOf(blockStart, blocks * 2 + 1);
+        }
+        blockStart[blocks] = size;
+        return blocks++;
+    }
+
+    void finish() {
+        blockStart[blocks] = size;
+    }
+
+    // Last instruction of block k, or NONE if it has none left
+    int last(int k) {
+        for (int i = blockStart[k + 1] - 1; i >= blockStart[k]; i--) {
+            if (op[i] != NOP) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    // Drops the removed instructions; blocks keep their numbers
+    void compact() {
+        int kept = 0;
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            while (k < blocks && blockStart[k] == i) {
+                blockStart[k++] = kept;
+            }
+            if (op[i] != NOP) {
+                op[kept] = op[i];
+                d[kept] = d[i];
+                a[kept] = a[i];
+                b[kept] = b[i];
+                target[kept] = target[i];
+                kept++;
+            }
+        }
+        while (k <= blocks) {
+            blockStart[k++] = kept;
+        }
+        size = kept;
+    }
+
+    // Puts an empty block before each block k with before[k], which falls
+    // through to k and gets the jumps to k from earlier blocks; later ones
+    // still go to k. Returns the new number of every block
+    int[] insertBlocks(boolean[] before) {
+        int[] moved = new int[blocks];
+        int count = 0;
+        for (int k = 0; k < blocks; k++) {
+            if (before[k]) {
+                count++;
+            }
+            moved[k] = k + count;
+        }
+        int[] start = new int[blocks + count + 1];
+        for (int k = 0; k < blocks; k++) {
+            start[moved[k]] = blockStart[k];
+            if (before[k]) {
+                start[moved[k] - 1] = blockStart[k];
+            }
+            for (int i = blockStart[k]; i < blockStart[k + 1]; i++) {
+                if (jumps(op[i])) {
+                    int to = target[i];
+                    target[i] = before[to] && to > k ? moved[to] - 1 : moved[to];
+                }
+            }
+        }
+        start[blocks + count] = size;
+        blockStart = start;
+        blocks += count;
+        return moved;
+    }
+
+    // Adds an instruction to block k before instruction at, once splice()
+    // is called; those for the same place keep their order
+    void insert(int at, int k, int opcode, int dest, int first, int second) {
+        if (added == addAt.length) {
+            int capacity = added * 2;
+            addAt = Arrays.copyOf(addAt, capacity);
+            addBlock = Arrays.copyOf(addBlock, capacity);
+            addOp = Arrays.copyOf(addOp, capacity);
+            addD = Arrays.copyOf(addD, capacity);
+            addA = Arrays.copyOf(addA, capacity);
+            addB = Arrays.copyOf(addB, capacity);
+        }
+        addAt[added] = at;
+        addBlock[added] = k;
+        addOp[added] = opcode;
+        addD[added] = dest;
+        addA[added] = first;
+        addB[added] = second;
+        added++;
+    }
+
+    // Whether an instruction insert() still keeps for a block from first
+    // to last writes variable
+    boolean inserts(int first, int last, int variable) {
+        for (int j = 0; j < added; j++) {
+            if (addBlock[j] >= first && addBlock[j] <= last && addD[j] == variable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Makes the insertions. Returns how many there were
+    int splice() {
+        if (added == 0) {
+            return 0;
+        }
+        Integer[] order = new Integer[added];
+        for (int j = 0; j < added; j++) {
+            order[j] = j;
+        }
+        // A stable sort, so the same place keeps insertion order
+        Arrays.sort(order, (x, y) -> addAt[x] != addAt[y] ? Integer.compare(addAt[x], addAt[y])
+            : Integer.compare(addBlock[x], addBlock[y]));
+
+        int capacity = size + added;
+        int[] newOp = new int[capacity];
+        int[] newD = new int[capacity];
+        int[] newA = new int[capacity];
+        int[] newB = new int[capacity];
+        int[] newTarget = new int[capacity];
+        int n = 0;
+        int next = 0;
+        for (int k = 0; k < blocks; k++) {
+            int start = n;
+            for (int i = blockStart[k]; i <= blockStart[k + 1]; i++) {
+                while (next < added && addBlock[order[next]] == k && addAt[order[next]] == i) {
+                    int j = order[next++];
+                    newOp[n] = addOp[j];
+                    newD[n] = addD[j];
+                    newA[n] = addA[j];
+                    newB[n] = addB[j];
+                    newTarget[n++] = NONE;
+                }
+                if (i < blockStart[k + 1]) {
+                    newOp[n] = op[i];
+                    newD[n] = d[i];
+                    newA[n] = a[i];
+                    newB[n] = b[i];
+                    newTarget[n++] = target[i];
+                }
+            }
+            blockStart[k] = start;
+        }
+        blockStart[blocks] = n;
+        op = newOp;
+        d = newD;
+        a = newA;
+        b = newB;
+        target = newTarget;
+        size = n;
+        int count = added;
+        added = 0;
+        return count;
+    }
+
+    // Registers for the temporaries, numbered from 0 in each bank: two share
+    // a register unless both are live at once. An instruction may write the
+    // register of an operand it reads last. Fills peak with how many
+    // registers each bank needs
+    int[][] allocate(int[] peak) {
+        int[][] register = { new int[temporaries[INT]], new int[temporaries[REAL]] };
+        int[][] lastUse = { new int[temporaries[INT]], new int[temporaries[REAL]] };
+        int[][] free = { new int[16], new int[16] };
+        int[] count = new int[2];
+        for (int k = 0; k < blocks; k++) {
+            // Temporaries die with their block, so every register is free
+            for (int bank = INT; bank <= REAL; bank++) {
+                count[bank] = 0;
+                for (int r = peak[bank] - 1; r >= 0; r--) {
+                    push(free, count, bank, r);
+                }
+            }
+            for (int i = blockStart[k]; i < blockStart[k + 1]; i++) {
+                int reads = reads(op[i]);
+                if (reads >= 1 && kind(a[i]) == TEMPORARY) {
+                    lastUse[bank(a[i])][index(a[i])] = i;
+                }
+                if (reads == 2 && kind(b[i]) == TEMPORARY) {
+                    lastUse[bank(b[i])][index(b[i])] = i;
+                }
+            }
+            for (int i = blockStart[k]; i < blockStart[k + 1]; i++) {
+                int reads = reads(op[i]);
+                if (reads >= 1 && kind(a[i]) == TEMPORARY && lastUse[bank(a[i])][index(a[i])] == i) {
+                    push(free, count, bank(a[i]), register[bank(a[i])][index(a[i])]);
+                }
+                if (reads == 2 && b[i] != a[i] && kind(b[i]) == TEMPORARY && lastUse[bank(b[i])][index(b[i])] == i) {
+                    push(free, count, bank(b[i]), register[bank(b[i])][index(b[i])]);
+                }
+                if (defines(op[i]) && kind(d[i]) == TEMPORARY) {
+                    int bank = bank(d[i]);
+                    int r = count[bank] > 0 ? free[bank][--count[bank]] : peak[bank]++;
+                    register[bank][index(d[i])] = r;
+                    // Written and never read
+                    if (lastUse[bank][index(d[i])] <= i) {
+                        push(free, count, bank, r);
+                    }
+                }
+            }
+        }
+        return register;
+    }
+
+    private static void push(int[][] free, int[] count, int bank, int register) {
+        if (count[bank] == free[bank].length) {
+            free[bank] = Arrays.copyOf(free[bank], count[bank] * 2);
+        }
+        free[bank][count[bank]++] = register;
+    }
+}
\ No newline at end of file
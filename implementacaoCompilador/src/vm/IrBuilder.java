@@ -0,0 +1,394 @@
+package vm;
+
+import java.util.Arrays;
+
+import lexical.TokenBuffer;
+import lexical.TokenType;
+import semantic.IdType;
+import syntatic.Ast;
+import syntatic.NodeKind;
+
+// Lowers a tree the compiler accepted without errors to Ir. Variables are
+// numbered per bank in declaration order and every operator gets a fresh
+// temporary, except the root of an assignment, which writes the variable
+// itself. Both statements and expressions are walked on explicit stacks.
+//
+// Conditions compile to jumps rather than values: && and || short-circuit
+// and a comparison jumps on its own. Jumps whose target is not known yet
+// are chained through their targets and patched once it is
+public class IrBuilder {
+
+    private static final int END = -1;
+
+    private final Ast ast;
+    private final TokenBuffer tokens;
+    private final Ir ir = new Ir();
+
+    // Variable operand per SymbolTable id
+    private final int[] variableOf;
+
+    // Expressions: nodes still to visit, ~node once their children are
+    // queued, and the operands already evaluated
+    private int[] pending = new int[32];
+    private int[] operands = new int[32];
+
+    // Conditions: node, whether it jumps when true, progress, and the
+    // chain of its left operand
+    private int[] condNode = new int[16];
+    private boolean[] condSense = new boolean[16];
+    private int[] condState = new int[16];
+    private int[] condChain = new int[16];
+
+    public IrBuilder(Ast ast, TokenBuffer tokens) {
+        this.ast = ast;
+        this.tokens = tokens;
+        this.variableOf = new int[tokens.getSt().size()];
+        Arrays.fill(variableOf, Ir.NONE);
+    }
+
+    public Ir build() {
+        ir.startBlock();
+        statements();
+        ir.add(Bytecode.HALT, Ir.NONE, Ir.NONE, Ir.NONE, Ir.NONE);
+        ir.finish();
+        return ir;
+    }
+
+    private void statements() {
+        // Open IF and REPEAT nodes; for an IF, first is the chain of jumps to
+        // its else part and second the jump over it, for a REPEAT first is
+        // the block that starts the loop
+        int[] control = new int[16];
+        int[] first = new int[16];
+        int[] second = new int[16];
+        int open = 0;
+        int[] declared = new int[2];
+
+        Ast.Cursor cursor = ast.cursor();
+        int node;
+        while ((node = cursor.next()) != Ast.NONE) {
+            NodeKind kind = ast.kind(node);
+            if (!cursor.entering()) {
+                if (kind == NodeKind.IF) {
+                    open--;
+                    patch(second[open] == END ? first[open] : second[open], ir.startBlock());
+                } else if (kind == NodeKind.REPEAT) {
+                    open--;
+                    int until = ast.nextSibling(ast.firstChild(node));
+                    patch(condition(until, false), first[open]);
+                }
+                continue;
+            }
+
+            switch (kind) {
+                case PROGRAM:
+                    break;
+                case DECL:
+                    int bank = bank(ast.type(node));
+                    variableOf[tokens.id(ast.token(node))] = ir.variable(declared[bank]++, bank);
+                    cursor.skip();
+                    break;
+                case BLOCK:
+                    // An else part: the then part jumps over it
+                    if (open > 0 && ast.kind(control[open - 1]) == NodeKind.IF
+                            && node != ast.nextSibling(ast.firstChild(control[open - 1]))) {
+                        second[open - 1] = jump(Bytecode.JUMP, END, Ir.NONE, Ir.NONE);
+                        patch(first[open - 1], ir.startBlock());
+                        first[open - 1] = END;
+                    }
+                    break;
+                case IF:
+                case REPEAT:
+                    if (open == control.length) {
+                        control = Arrays.copyOf(control, open * 2);
+                        first = Arrays.copyOf(first, open * 2);
+                        second = Arrays.copyOf(second, open * 2);
+                    }
+                    control[open] = node;
+                    second[open] = END;
+                    first[open] = kind == NodeKind.IF ? condition(ast.firstChild(node), false) : ir.startBlock();
+                    open++;
+                    break;
+                case ASSIGN:
+                    assign(node);
+                    cursor.skip();
+                    break;
+                case READ:
+                    int target = variableOf[tokens.id(ast.token(node))];
+                    int read = Ir.bank(target) == Ir.REAL ? Bytecode.READ_R : Bytecode.READ_I;
+                    ir.add(read, target, Ir.NONE, Ir.NONE, Ir.NONE);
+                    break;
+                case WRITE:
+                    write(ast.firstChild(node));
+                    cursor.skip();
+                    break;
+                default:
+                    // The condition of an IF or REPEAT, compiled with it
+                    cursor.skip();
+                    break;
+            }
+        }
+    }
+
+    private void assign(int node) {
+        int target = variableOf[tokens.id(ast.token(node))];
+        int expression = ast.firstChild(node);
+        boolean same = Ir.bank(target) == bank(ast.type(expression));
+        int value = value(expression, same ? target : Ir.NONE);
+        if (value != target) {
+            int op = !same ? Bytecode.I2R : Ir.bank(target) == Ir.REAL ? Bytecode.MOV_R : Bytecode.MOV_I;
+            ir.add(op, target, value, Ir.NONE, Ir.NONE);
+        }
+    }
+
+    private void write(int expression) {
+        IdType type = ast.type(expression);
+        if (ast.kind(expression) == NodeKind.TEXT || type == IdType.APP) {
+            ir.add(Bytecode.WRITE_T, Ir.NONE, ir.text(tokens.token(ast.token(expression))), Ir.NONE, Ir.NONE);
+            return;
+        }
+        int value = value(expression, Ir.NONE);
+        int op = type == IdType.BOOLEAN ? Bytecode.WRITE_B
+            : type == IdType.REAL_NUMBER ? Bytecode.WRITE_R : Bytecode.WRITE_I;
+        ir.add(op, Ir.NONE, value, Ir.NONE, Ir.NONE);
+    }
+
+    // Evaluates an expression and returns its operand. Variables and
+    // constants are their own operands; an operator writes a temporary, or
+    // into when it is the root
+    private int value(int expression, int into) {
+        int sp = 0;
+        int count = 0;
+        pending[sp++] = expression;
+        while (sp > 0) {
+            int entry = pending[--sp];
+            int node = entry < 0 ? ~entry : entry;
+            NodeKind kind = ast.kind(node);
+            if (kind == NodeKind.VARIABLE || kind == NodeKind.CONSTANT) {
+                if (count == operands.length) {
+                    operands = Arrays.copyOf(operands, count * 2);
+                }
+                operands[count++] = kind == NodeKind.CONSTANT ? constant(node) : variableOf[tokens.id(ast.token(node))];
+            } else if (entry >= 0) {
+                // Left is evaluated first, so it is pushed last
+                if (sp + 3 > pending.length) {
+                    pending = Arrays.copyOf(pending, pending.length * 2);
+                }
+                pending[sp++] = ~node;
+                int left = ast.firstChild(node);
+                if (ast.nextSibling(left) != Ast.NONE) {
+                    pending[sp++] = ast.nextSibling(left);
+                }
+                pending[sp++] = left;
+            } else if (kind == NodeKind.UNARY) {
+                int operand = operands[count - 1];
+                int dest = node == expression && into != Ir.NONE ? into : ir.temporary(bank(ast.type(node)));
+                int op = tokens.type(ast.token(node)) == TokenType.NOT ? Bytecode.NOT
+                    : Ir.bank(operand) == Ir.REAL ? Bytecode.NEG_R : Bytecode.NEG_I;
+                ir.add(op, dest, operand, Ir.NONE, Ir.NONE);
+                operands[count - 1] = dest;
+            } else {
+                operands[count - 2] = binary(node, operands[count - 2], operands[count - 1],
+                    node == expression ? into : Ir.NONE);
+                count--;
+            }
+        }
+        return operands[0];
+    }
+
+    private int binary(int node, int left, int right, int into) {
+        TokenType op = tokens.type(ast.token(node));
+        int dest = into != Ir.NONE ? into : ir.temporary(bank(ast.type(node)));
+        if (op == TokenType.AND || op == TokenType.OR) {
+            ir.add(op == TokenType.AND ? Bytecode.AND : Bytecode.OR, dest, left, right, Ir.NONE);
+            return dest;
+        }
+        // Mixed integer and real operands are both taken as reals, and so
+        // are those of "/"
+        boolean real = op == TokenType.DIV || Ir.bank(left) == Ir.REAL || Ir.bank(right) == Ir.REAL;
+        int a = real ? toReal(left) : left;
+        int b = real ? toReal(right) : right;
+        int relation = relation(op);
+        int opcode;
+        if (relation >= 0) {
+            opcode = (real ? Bytecode.CMP_R : Bytecode.CMP_I) + relation;
+        } else if (op == TokenType.DIV) {
+            opcode = Bytecode.DIV_R;
+        } else {
+            int arithmetic = op == TokenType.ADD ? 0 : op == TokenType.SUB ? 1 : 2;
+            opcode = (real ? Bytecode.ADD_R : Bytecode.ADD_I) + arithmetic;
+        }
+        ir.add(opcode, dest, a, b, Ir.NONE);
+        return dest;
+    }
+
+    private int toReal(int operand) {
+        if (Ir.bank(operand) == Ir.REAL) {
+            return operand;
+        }
+        int converted = ir.temporary(Ir.REAL);
+        ir.add(Bytecode.I2R, converted, operand, Ir.NONE, Ir.NONE);
+        return converted;
+    }
+
+    private int constant(int node) {
+        String text = tokens.token(ast.token(node));
+        if (ast.type(node) == IdType.REAL_NUMBER) {
+            return ir.constant(Double.parseDouble(text));
+        }
+        try {
+            return ir.constant(Long.parseLong(text));
+        } catch (NumberFormatException e) {
+            throw new VmError("Constante inteira fora do intervalo: " + text);
+        }
+    }
+
+    // Emits the jumps for a condition: they are taken when it is as true as
+    // sense, and it falls through otherwise. Returns their chain
+    private int condition(int expression, boolean sense) {
+        int sp = 0;
+        int chain = END;
+        push(sp++, expression, sense);
+        while (sp > 0) {
+            int top = sp - 1;
+            int node = condNode[top];
+            // !a jumps when a does not
+            while (ast.kind(node) == NodeKind.UNARY && tokens.type(ast.token(node)) == TokenType.NOT) {
+                node = ast.firstChild(node);
+                condNode[top] = node;
+                condSense[top] = !condSense[top];
+            }
+            TokenType op = tokens.type(ast.token(node));
+            boolean logic = ast.kind(node) == NodeKind.BINARY && (op == TokenType.AND || op == TokenType.OR);
+            // a && b is false as soon as a is, a || b true as soon as a is
+            boolean leftSense = op == TokenType.OR;
+            if (!logic) {
+                chain = test(node, condSense[top]);
+                sp--;
+            } else if (condState[top] == 0) {
+                condState[top] = 1;
+                push(sp++, ast.firstChild(node), leftSense);
+            } else if (condState[top] == 1) {
+                condState[top] = 2;
+                condChain[top] = chain;
+                push(sp++, ast.nextSibling(ast.firstChild(node)), condSense[top]);
+            } else {
+                // The left jumps either go where the whole condition's do,
+                // or past it
+                if (leftSense == condSense[top]) {
+                    chain = merge(condChain[top], chain);
+                } else {
+                    patch(condChain[top], ir.startBlock());
+                }
+                sp--;
+            }
+        }
+        return chain;
+    }
+
+    private void push(int at, int node, boolean sense) {
+        if (at == condNode.length) {
+            condNode = Arrays.copyOf(condNode, at * 2);
+            condSense = Arrays.copyOf(condSense, at * 2);
+            condState = Arrays.copyOf(condState, at * 2);
+            condChain = Arrays.copyOf(condChain, at * 2);
+        }
+        condNode[at] = node;
+        condSense[at] = sense;
+        condState[at] = 0;
+        condChain[at] = END;
+    }
+
+    // A jump on a condition that is not && or ||
+    private int test(int node, boolean sense) {
+        int relation = ast.kind(node) == NodeKind.BINARY ? relation(tokens.type(ast.token(node))) : -1;
+        if (relation < 0) {
+            int value = value(node, Ir.NONE);
+            return jump(sense ? Bytecode.JNZ : Bytecode.JZ, END, value, Ir.NONE);
+        }
+        int left = value(ast.firstChild(node), Ir.NONE);
+        int right = value(ast.nextSibling(ast.firstChild(node)), Ir.NONE);
+        boolean real = Ir.bank(left) == Ir.REAL || Ir.bank(right) == Ir.REAL;
+        int a = real ? toReal(left) : left;
+        int b = real ? toReal(right) : right;
+        if (!sense) {
+            return jump((real ? Bytecode.JNOT_R : Bytecode.JNOT_I) + relation, END, a, b);
+        }
+        if (!real) {
+            return jump(Bytecode.JNOT_I + inverse(relation), END, a, b);
+        }
+        // The inverse of a comparison between reals does not hold for NaN,
+        // so this one is taken as a value
+        int flag = ir.temporary(Ir.INT);
+        ir.add(Bytecode.CMP_R + relation, flag, a, b, Ir.NONE);
+        return jump(Bytecode.JNZ, END, flag, Ir.NONE);
+    }
+
+    static int relation(TokenType op) {
+        switch (op) {
+            case EQUAL:
+                return Bytecode.EQ;
+            case NOT_EQUAL:
+                return Bytecode.NE;
+            case LOWER_THAN:
+                return Bytecode.LT;
+            case GREATER_THAN:
+                return Bytecode.GT;
+            case LOWER_EQUAL:
+                return Bytecode.LE;
+            case GREATER_EQUAL:
+                return Bytecode.GE;
+            default:
+                return -1;
+        }
+    }
+
+    static int inverse(int relation) {
+        switch (relation) {
+            case Bytecode.EQ:
+                return Bytecode.NE;
+            case Bytecode.NE:
+                return Bytecode.EQ;
+            case Bytecode.LT:
+                return Bytecode.GE;
+            case Bytecode.GT:
+                return Bytecode.LE;
+            case Bytecode.LE:
+                return Bytecode.GT;
+            default:
+                return Bytecode.LT;
+        }
+    }
+
+    // A jump ends its block. Until patched its target links to the
+    // previous jump of the same chain. Returns the new chain
+    private int jump(int opcode, int chain, int a, int b) {
+        int jump = ir.add(opcode, Ir.NONE, a, b, chain);
+        ir.startBlock();
+        return jump;
+    }
+
+    private int merge(int chain, int other) {
+        if (other == END) {
+            return chain;
+        }
+        int last = other;
+        while (ir.target[last] != END) {
+            last = ir.target[last];
+        }
+        ir.target[last] = chain;
+        return other;
+    }
+
+    private void patch(int chain, int block) {
+        while (chain != END) {
+            int next = ir.target[chain];
+            ir.target[chain] = block;
+            chain = next;
+        }
+    }
+
+    private static int bank(IdType type) {
+        return type == IdType.REAL_NUMBER ? Ir.REAL : Ir.INT;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,851 @@
+package vm;
+
+import java.util.Arrays;
+
+// Rewrites Ir in place and drops what it removed.
+//
+// Level 1 works block by block: it propagates copies and constants,
+// computes operations on constants the way the VM would (integers wrap,
+// a comparison is 0 or 1), applies the identities that hold for every
+// operand, reals with NaN and -0.0 included, and turns jumps on constants
+// into plain jumps or nothing. Then it removes temporaries nobody reads,
+// blocks no path reaches and jumps to the block that follows anyway.
+//
+// Level 2 also reuses what the block already computed: an operation on
+// the same values as an earlier one becomes a copy of its result (local
+// value numbering). And it removes stores to variables no path reads
+// again, from the variables live at the end of each block.
+//
+// Level 3 also optimizes repeat loops: operations on values the loop does
+// not change move to a block before it, and a multiplication of a
+// variable the loop only steps by a constant becomes a variable of its
+// own, stepped alongside
+public final class Optimizer {
+
+    public static final int MAX_LEVEL = 3;
+
+    private final int level;
+    private Ir ir;
+    private int added;
+
+    // Per variable and temporary, by number(): its value number, the block
+    // that gave it, and an operand holding the same value, if known. A
+    // constant's value number is its operand, any other is negative
+    private int[] value;
+    private int[] valueEpoch;
+    private int[] copy;
+    private int epoch;
+    private int stamp;
+
+    // Operations computed in the current block, open addressing: opcode,
+    // value numbers of the operands, the operand that got the result and
+    // its value number then, and the block of the entry
+    private int[] tableOp = new int[64];
+    private int[] tableA = new int[64];
+    private int[] tableB = new int[64];
+    private int[] tableHolder = new int[64];
+    private int[] tableValue = new int[64];
+    private int[] tableEpoch = new int[64];
+    private int entries;
+
+    // Per temporary, what to read instead before the loop, when the
+    // temporary does not change in loop number outsideLoop
+    private int[][] outside;
+    private int[][] outsideLoop;
+    private int loops;
+
+    public Optimizer(int level) {
+        this.level = level;
+    }
+
+    // Returns how many instructions it removed
+    public int run(Ir ir) {
+        if (level <= 0) {
+            return 0;
+        }
+        this.ir = ir;
+        int before = ir.size;
+        added = 0;
+        Arrays.fill(tableEpoch, -1);
+        blocks();
+        unreachable();
+        if (level >= 3) {
+            added = loops();
+            // What moved out of a loop is read through copies until then
+            if (added > 0) {
+                blocks();
+            }
+        }
+        // Each of these can leave work for the others
+        int removed;
+        do {
+            removed = deadTemporaries() + jumpsToNext();
+            if (level >= 2) {
+                removed += deadStores();
+            }
+        } while (removed > 0);
+        ir.compact();
+        return before + added - ir.size;
+    }
+
+    // How many instructions the last run() added
+    public int added() {
+        return added;
+    }
+
+    private void blocks() {
+        int numbers = ir.variables[Ir.INT] + ir.variables[Ir.REAL] + ir.temporaries[Ir.INT] + ir.temporaries[Ir.REAL];
+        value = new int[numbers];
+        valueEpoch = new int[numbers];
+        copy = new int[numbers];
+        for (int k = 0; k < ir.blocks; k++) {
+            block(k);
+        }
+    }
+
+    private void block(int k) {
+        epoch++;
+        entries = 0;
+        for (int i = ir.blockStart[k]; i < ir.blockStart[k + 1]; i++) {
+            int op = ir.op[i];
+            int reads = Ir.reads(op);
+            if (reads >= 1) {
+                ir.a[i] = resolve(ir.a[i]);
+            }
+            if (reads == 2) {
+                ir.b[i] = resolve(ir.b[i]);
+            }
+            if (Ir.jumps(op)) {
+                branch(i);
+            } else if (op == Bytecode.READ_I || op == Bytecode.READ_R) {
+                define(ir.d[i], --stamp, Ir.NONE);
+            } else if (Ir.defines(op)) {
+                simplify(i);
+                if (ir.op[i] != Bytecode.MOV_I && ir.op[i] != Bytecode.MOV_R) {
+                    int result = --stamp;
+                    if (level < 2 || !reuse(i, result)) {
+                        define(ir.d[i], result, Ir.NONE);
+                        continue;
+                    }
+                }
+                int source = ir.a[i];
+                if (valueOf(source) == valueOf(ir.d[i])) {
+                    // Already holds it
+                    ir.op[i] = Ir.NOP;
+                } else {
+                    define(ir.d[i], valueOf(source), source);
+                }
+            }
+        }
+    }
+
+    private int number(int operand) {
+        int index = Ir.index(operand);
+        if (Ir.bank(operand) == Ir.REAL) {
+            index += Ir.kind(operand) == Ir.VARIABLE ? ir.variables[Ir.INT] : ir.temporaries[Ir.INT];
+        }
+        if (Ir.kind(operand) == Ir.TEMPORARY) {
+            index += ir.variables[Ir.INT] + ir.variables[Ir.REAL];
+        }
+        return index;
+    }
+
+    // A value number; an operand not written yet in this block gets a new one
+    private int valueOf(int operand) {
+        if (Ir.kind(operand) == Ir.CONSTANT) {
+            return operand;
+        }
+        int n = number(operand);
+        if (valueEpoch[n] != epoch) {
+            valueEpoch[n] = epoch;
+            value[n] = --stamp;
+            copy[n] = Ir.NONE;
+        }
+        return value[n];
+    }
+
+    private void define(int operand, int valueNumber, int source) {
+        int n = number(operand);
+        valueEpoch[n] = epoch;
+        value[n] = valueNumber;
+        copy[n] = source;
+    }
+
+    // The operand to read instead: the constant or earlier copy that holds
+    // the same value, if it still does
+    private int resolve(int operand) {
+        int current = valueOf(operand);
+        if (current >= 0) {
+            return current;
+        }
+        int source = copy[number(operand)];
+        return source != Ir.NONE && valueOf(source) == current ? source : operand;
+    }
+
+    private void simplify(int i) {
+        int op = ir.op[i];
+        int a = ir.a[i];
+        int b = ir.b[i];
+        boolean constantA = Ir.kind(a) == Ir.CONSTANT;
+        if (Ir.reads(op) == 1) {
+            if (constantA) {
+                fold(i, op, a, Ir.NONE);
+            }
+            return;
+        }
+        boolean constantB = Ir.kind(b) == Ir.CONSTANT;
+        if (constantA && constantB) {
+            fold(i, op, a, b);
+            return;
+        }
+        boolean same = valueOf(a) == valueOf(b);
+        switch (op) {
+            case Bytecode.ADD_I:
+                if (isInt(a, 0) || isInt(b, 0)) {
+                    move(i, isInt(a, 0) ? b : a);
+                }
+                break;
+            case Bytecode.SUB_I:
+                if (same) {
+                    move(i, ir.constant(0L));
+                } else if (isInt(b, 0)) {
+                    move(i, a);
+                }
+                break;
+            case Bytecode.MUL_I:
+                if (isInt(a, 0) || isInt(b, 0)) {
+                    move(i, ir.constant(0L));
+                } else if (isInt(a, 1) || isInt(b, 1)) {
+                    move(i, isInt(a, 1) ? b : a);
+                }
+                break;
+            case Bytecode.SUB_R:
+                // x + 0.0 is not x when x is -0.0, but x - 0.0 is
+                if (constantB && Double.doubleToRawLongBits(ir.realValue(b)) == 0) {
+                    move(i, a);
+                }
+                break;
+            case Bytecode.MUL_R:
+                if (isReal(a, 1) || isReal(b, 1)) {
+                    move(i, isReal(a, 1) ? b : a);
+                }
+                break;
+            case Bytecode.DIV_R:
+                if (isReal(b, 1)) {
+                    move(i, a);
+                }
+                break;
+            case Bytecode.AND:
+            case Bytecode.OR:
+                // Booleans are 0 or 1
+                long absorbing = op == Bytecode.AND ? 0 : 1;
+                if (same) {
+                    move(i, a);
+                } else if (isInt(a, absorbing) || isInt(b, absorbing)) {
+                    move(i, ir.constant(absorbing));
+                } else if (isInt(a, 1 - absorbing) || isInt(b, 1 - absorbing)) {
+                    move(i, isInt(a, 1 - absorbing) ? b : a);
+                }
+                break;
+            default:
+                // An integer compared with itself; a real might be NaN
+                if (same && op >= Bytecode.CMP_I && op < Bytecode.CMP_R) {
+                    move(i, ir.constant(holds(op - Bytecode.CMP_I, 0L, 0L) ? 1L : 0L));
+                }
+                break;
+        }
+    }
+
+    // Replaces an operation on constants with its result
+    private void fold(int i, int op, int a, int b) {
+        int result;
+        switch (op) {
+            case Bytecode.MOV_I:
+            case Bytecode.MOV_R:
+                return;
+            case Bytecode.I2R:
+                result = ir.constant((double) ir.intValue(a));
+                break;
+            case Bytecode.NEG_I:
+                result = ir.constant(-ir.intValue(a));
+                break;
+            case Bytecode.NEG_R:
+                result = ir.constant(-ir.realValue(a));
+                break;
+            case Bytecode.NOT:
+                result = ir.constant(ir.intValue(a) ^ 1);
+                break;
+            case Bytecode.ADD_I:
+                result = ir.constant(ir.intValue(a) + ir.intValue(b));
+                break;
+            case Bytecode.SUB_I:
+                result = ir.constant(ir.intValue(a) - ir.intValue(b));
+                break;
+            case Bytecode.MUL_I:
+                result = ir.constant(ir.intValue(a) * ir.intValue(b));
+                break;
+            case Bytecode.ADD_R:
+                result = ir.constant(ir.realValue(a) + ir.realValue(b));
+                break;
+            case Bytecode.SUB_R:
+                result = ir.constant(ir.realValue(a) - ir.realValue(b));
+                break;
+            case Bytecode.MUL_R:
+                result = ir.constant(ir.realValue(a) * ir.realValue(b));
+                break;
+            case Bytecode.DIV_R:
+                result = ir.constant(ir.realValue(a) / ir.realValue(b));
+                break;
+            case Bytecode.AND:
+                result = ir.constant(ir.intValue(a) & ir.intValue(b));
+                break;
+            case Bytecode.OR:
+                result = ir.constant(ir.intValue(a) | ir.intValue(b));
+                break;
+            default:
+                result = ir.constant(compare(op - Bytecode.CMP_I, a, b) ? 1L : 0L);
+                break;
+        }
+        move(i, result);
+    }
+
+    // Whether a comparison of two constants holds; relation counts from
+    // CMP_I or JNOT_I, the real ones following the integer ones
+    private boolean compare(int relation, int a, int b) {
+        int width = Bytecode.CMP_R - Bytecode.CMP_I;
+        if (relation >= width) {
+            return holds(relation - width, ir.realValue(a), ir.realValue(b));
+        }
+        return holds(relation, ir.intValue(a), ir.intValue(b));
+    }
+
+    private static boolean holds(int relation, long x, long y) {
+        switch (relation) {
+            case Bytecode.EQ:
+                return x == y;
+            case Bytecode.NE:
+                return x != y;
+            case Bytecode.LT:
+                return x < y;
+            case Bytecode.GT:
+                return x > y;
+            case Bytecode.LE:
+                return x <= y;
+            default:
+                return x >= y;
+        }
+    }
+
+    private static boolean holds(int relation, double x, double y) {
+        switch (relation) {
+            case Bytecode.EQ:
+                return x == y;
+            case Bytecode.NE:
+                return x != y;
+            case Bytecode.LT:
+                return x < y;
+            case Bytecode.GT:
+                return x > y;
+            case Bytecode.LE:
+                return x <= y;
+            default:
+                return x >= y;
+        }
+    }
+
+    // A conditional jump whose outcome is known is taken always or never
+    private void branch(int i) {
+        int op = ir.op[i];
+        int a = ir.a[i];
+        int b = ir.b[i];
+        boolean taken;
+        if (op == Bytecode.JZ || op == Bytecode.JNZ) {
+            if (Ir.kind(a) != Ir.CONSTANT) {
+                return;
+            }
+            taken = (ir.intValue(a) == 0) == (op == Bytecode.JZ);
+        } else if (op >= Bytecode.JNOT_I && Ir.kind(a) == Ir.CONSTANT && Ir.kind(b) == Ir.CONSTANT) {
+            taken = !compare(op - Bytecode.JNOT_I, a, b);
+        } else if (op >= Bytecode.JNOT_I && op < Bytecode.JNOT_R && valueOf(a) == valueOf(b)) {
+            taken = !holds(op - Bytecode.JNOT_I, 0L, 0L);
+        } else {
+            return;
+        }
+        ir.op[i] = taken ? Bytecode.JUMP : Ir.NOP;
+        ir.a[i] = Ir.NONE;
+        ir.b[i] = Ir.NONE;
+    }
+
+    private void move(int i, int source) {
+        ir.op[i] = Ir.bank(ir.d[i]) == Ir.REAL ? Bytecode.MOV_R : Bytecode.MOV_I;
+        ir.a[i] = source;
+        ir.b[i] = Ir.NONE;
+    }
+
+    private boolean isInt(int operand, long constant) {
+        return Ir.kind(operand) == Ir.CONSTANT && ir.intValue(operand) == constant;
+    }
+
+    private boolean isReal(int operand, double constant) {
+        return Ir.kind(operand) == Ir.CONSTANT && ir.realValue(operand) == constant;
+    }
+
+    // Looks the operation up among those computed in this block, and makes
+    // it a copy of the result if it is there and still held. Adds it with
+    // its result otherwise
+    private boolean reuse(int i, int result) {
+        int op = ir.op[i];
+        int a = valueOf(ir.a[i]);
+        int b = Ir.reads(op) == 2 ? valueOf(ir.b[i]) : 0;
+        if (commutative(op) && a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        int mask = tableOp.length - 1;
+        int slot = (op * 31 + a) * 31 + b;
+        slot = (slot ^ slot >>> 16) & mask;
+        while (tableEpoch[slot] == epoch) {
+            if (tableOp[slot] == op && tableA[slot] == a && tableB[slot] == b) {
+                if (valueOf(tableHolder[slot]) == tableValue[slot]) {
+                    move(i, tableHolder[slot]);
+                    return true;
+                }
+                break;
+            }
+            slot = slot + 1 & mask;
+        }
+        if (tableEpoch[slot] != epoch && ++entries * 2 > tableOp.length) {
+            grow();
+            return reuse(i, result);
+        }
+        tableEpoch[slot] = epoch;
+        tableOp[slot] = op;
+        tableA[slot] = a;
+        tableB[slot] = b;
+        tableHolder[slot] = ir.d[i];
+        tableValue[slot] = result;
+        return false;
+    }
+
+    private void grow() {
+        int[] op = tableOp;
+        int[] a = tableA;
+        int[] b = tableB;
+        int[] holder = tableHolder;
+        int[] held = tableValue;
+        int[] entry = tableEpoch;
+        int capacity = op.length * 2;
+        tableOp = new int[capacity];
+        tableA = new int[capacity];
+        tableB = new int[capacity];
+        tableHolder = new int[capacity];
+        tableValue = new int[capacity];
+        tableEpoch = new int[capacity];
+        Arrays.fill(tableEpoch, -1);
+        entries = 0;
+        for (int s = 0; s < op.length; s++) {
+            if (entry[s] != epoch) {
+                continue;
+            }
+            int slot = (op[s] * 31 + a[s]) * 31 + b[s];
+            slot = (slot ^ slot >>> 16) & capacity - 1;
+            while (tableEpoch[slot] == epoch) {
+                slot = slot + 1 & capacity - 1;
+            }
+            tableEpoch[slot] = epoch;
+            tableOp[slot] = op[s];
+            tableA[slot] = a[s];
+            tableB[slot] = b[s];
+            tableHolder[slot] = holder[s];
+            tableValue[slot] = held[s];
+            entries++;
+        }
+    }
+
+    private static boolean commutative(int op) {
+        switch (op) {
+            case Bytecode.ADD_I:
+            case Bytecode.MUL_I:
+            case Bytecode.ADD_R:
+            case Bytecode.MUL_R:
+            case Bytecode.AND:
+            case Bytecode.OR:
+            case Bytecode.CMP_I + Bytecode.EQ:
+            case Bytecode.CMP_I + Bytecode.NE:
+            case Bytecode.CMP_R + Bytecode.EQ:
+            case Bytecode.CMP_R + Bytecode.NE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Finds the loops and optimizes them, outer ones first, so that what
+    // does not change in either leaves both. A jump back closes a repeat:
+    // its body is the blocks from the one it jumps to, which is the only
+    // way in, to the jump, and it runs at least once. Returns how many
+    // instructions it added
+    private int loops() {
+        int[] end = new int[ir.blocks];
+        Arrays.fill(end, Ir.NONE);
+        boolean[] header = new boolean[ir.blocks];
+        boolean any = false;
+        for (int k = 0; k < ir.blocks; k++) {
+            int last = ir.last(k);
+            if (last != Ir.NONE && Ir.jumps(ir.op[last]) && ir.target[last] <= k) {
+                header[ir.target[last]] = true;
+                end[ir.target[last]] = k;
+                any = true;
+            }
+        }
+        if (!any) {
+            return 0;
+        }
+        int[] moved = ir.insertBlocks(header);
+        int[] blockOf = new int[ir.size];
+        for (int k = 0; k < ir.blocks; k++) {
+            Arrays.fill(blockOf, ir.blockStart[k], ir.blockStart[k + 1], k);
+        }
+        outside = new int[][] { new int[ir.temporaries[Ir.INT]], new int[ir.temporaries[Ir.REAL]] };
+        outsideLoop = new int[][] { new int[ir.temporaries[Ir.INT]], new int[ir.temporaries[Ir.REAL]] };
+        for (int k = 0; k < header.length; k++) {
+            if (header[k]) {
+                loop(moved[k], moved[end[k]], blockOf);
+            }
+        }
+        return ir.splice();
+    }
+
+    private void loop(int first, int last, int[] blockOf) {
+        int start = ir.blockStart[first];
+        int end = ir.blockStart[last + 1];
+        int before = first - 1;
+        loops++;
+
+        // Which variables the loop writes, and where each integer one steps
+        // by a constant; steps[v] is null if it is written any other way
+        boolean[][] written = { new boolean[ir.variables[Ir.INT]], new boolean[ir.variables[Ir.REAL]] };
+        int[][] steps = new int[ir.variables[Ir.INT]][];
+        int[] count = new int[ir.variables[Ir.INT]];
+        for (int i = start; i < end; i++) {
+            int d = ir.d[i];
+            if (!Ir.defines(ir.op[i]) || Ir.kind(d) != Ir.VARIABLE) {
+                continue;
+            }
+            int v = Ir.index(d);
+            boolean seen = written[Ir.bank(d)][v];
+            written[Ir.bank(d)][v] = true;
+            if (Ir.bank(d) == Ir.REAL) {
+                continue;
+            }
+            if (!seen) {
+                steps[v] = new int[2];
+            }
+            if (steps[v] != null && step(i) != Ir.NONE) {
+                if (count[v] == steps[v].length) {
+                    steps[v] = Arrays.copyOf(steps[v], count[v] * 2);
+                }
+                steps[v][count[v]++] = i;
+            } else {
+                steps[v] = null;
+            }
+        }
+        for (int bank = Ir.INT; bank <= Ir.REAL; bank++) {
+            for (int v = 0; v < written[bank].length; v++) {
+                // Stepped by an outer loop's multiplication
+                if (!written[bank][v] && ir.inserts(first, last, Ir.operand(Ir.VARIABLE, v, bank))) {
+                    written[bank][v] = true;
+                }
+            }
+        }
+
+        // Multiplications reduced so far: the stepped variable, the factor
+        // and the variable that holds their product
+        int[] reduced = new int[12];
+        int reductions = 0;
+        for (int i = start; i < end; i++) {
+            int op = ir.op[i];
+            if (!Ir.pure(op)) {
+                continue;
+            }
+            int d = ir.d[i];
+            int a = invariant(ir.a[i], written);
+            int b = Ir.reads(op) == 2 ? invariant(ir.b[i], written) : Ir.NONE;
+            boolean fixed = a != Ir.NONE && (b != Ir.NONE || Ir.reads(op) == 1);
+            if (op == Bytecode.MOV_I || op == Bytecode.MOV_R) {
+                if (fixed && Ir.kind(d) == Ir.TEMPORARY) {
+                    outside(d, a);
+                }
+                continue;
+            }
+            if (fixed) {
+                int hoisted = ir.variable(ir.variables[Ir.bank(d)], Ir.bank(d));
+                ir.insert(start, before, op, hoisted, a, b);
+                move(i, hoisted);
+                if (Ir.kind(d) == Ir.TEMPORARY) {
+                    outside(d, hoisted);
+                }
+                continue;
+            }
+            if (op != Bytecode.MUL_I) {
+                continue;
+            }
+            int stepped = stepped(ir.a[i], steps) ? ir.a[i] : stepped(ir.b[i], steps) ? ir.b[i] : Ir.NONE;
+            int factor = stepped == ir.a[i] ? b : a;
+            if (stepped == Ir.NONE || factor == Ir.NONE) {
+                continue;
+            }
+            int product = Ir.NONE;
+            for (int r = 0; r < reductions; r += 3) {
+                if (reduced[r] == stepped && reduced[r + 1] == factor) {
+                    product = reduced[r + 2];
+                }
+            }
+            if (product == Ir.NONE) {
+                product = reduce(stepped, factor, steps, count, start, before, blockOf);
+                if (reductions == reduced.length) {
+                    reduced = Arrays.copyOf(reduced, reductions * 2);
+                }
+                reduced[reductions++] = stepped;
+                reduced[reductions++] = factor;
+                reduced[reductions++] = product;
+            }
+            move(i, product);
+        }
+    }
+
+    // The operand that holds the same value before the loop, or Ir.NONE if
+    // it changes in the loop
+    private int invariant(int operand, boolean[][] written) {
+        int index = Ir.index(operand);
+        int bank = Ir.bank(operand);
+        switch (Ir.kind(operand)) {
+            case Ir.CONSTANT:
+                return operand;
+            case Ir.VARIABLE:
+                // Those added for this loop are only written before it
+                return index >= written[bank].length || !written[bank][index] ? operand : Ir.NONE;
+            default:
+                return outsideLoop[bank][index] == loops ? outside[bank][index] : Ir.NONE;
+        }
+    }
+
+    private void outside(int temporary, int operand) {
+        outsideLoop[Ir.bank(temporary)][Ir.index(temporary)] = loops;
+        outside[Ir.bank(temporary)][Ir.index(temporary)] = operand;
+    }
+
+    // The constant instruction i adds to or subtracts from the variable it
+    // writes, or Ir.NONE if it does not just step it
+    private int step(int i) {
+        int d = ir.d[i];
+        int a = ir.a[i];
+        int b = ir.b[i];
+        if ((ir.op[i] == Bytecode.ADD_I || ir.op[i] == Bytecode.SUB_I) && a == d && Ir.kind(b) == Ir.CONSTANT) {
+            return b;
+        }
+        if (ir.op[i] == Bytecode.ADD_I && b == d && Ir.kind(a) == Ir.CONSTANT) {
+            return a;
+        }
+        return Ir.NONE;
+    }
+
+    private static boolean stepped(int operand, int[][] steps) {
+        return Ir.kind(operand) == Ir.VARIABLE && Ir.bank(operand) == Ir.INT && Ir.index(operand) < steps.length
+            && steps[Ir.index(operand)] != null;
+    }
+
+    // A variable that equals stepped * factor all through the loop: set
+    // before it, and stepped by factor times the step of stepped right
+    // after each of its steps
+    private int reduce(int stepped, int factor, int[][] steps, int[] count, int start, int before, int[] blockOf) {
+        int product = ir.variable(ir.variables[Ir.INT], Ir.INT);
+        ir.insert(start, before, Bytecode.MUL_I, product, stepped, factor);
+        int v = Ir.index(stepped);
+        for (int s = 0; s < count[v]; s++) {
+            int i = steps[v][s];
+            int constant = step(i);
+            int by;
+            if (Ir.kind(factor) == Ir.CONSTANT) {
+                by = ir.constant(ir.intValue(constant) * ir.intValue(factor));
+            } else if (ir.intValue(constant) == 1) {
+                by = factor;
+            } else {
+                by = ir.variable(ir.variables[Ir.INT], Ir.INT);
+                ir.insert(start, before, Bytecode.MUL_I, by, factor, constant);
+            }
+            ir.insert(i + 1, blockOf[i], ir.op[i], product, product, by);
+        }
+        return product;
+    }
+
+    // Removes operations on temporaries nobody reads, last first, so that
+    // their operands may go as well
+    private int deadTemporaries() {
+        int[][] readers = { new int[ir.temporaries[Ir.INT]], new int[ir.temporaries[Ir.REAL]] };
+        for (int i = 0; i < ir.size; i++) {
+            count(readers, i, 1);
+        }
+        int removed = 0;
+        for (int i = ir.size - 1; i >= 0; i--) {
+            int d = ir.d[i];
+            if (Ir.pure(ir.op[i]) && Ir.kind(d) == Ir.TEMPORARY && readers[Ir.bank(d)][Ir.index(d)] == 0) {
+                count(readers, i, -1);
+                ir.op[i] = Ir.NOP;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void count(int[][] readers, int i, int delta) {
+        int reads = Ir.reads(ir.op[i]);
+        if (reads >= 1 && Ir.kind(ir.a[i]) == Ir.TEMPORARY) {
+            readers[Ir.bank(ir.a[i])][Ir.index(ir.a[i])] += delta;
+        }
+        if (reads == 2 && Ir.kind(ir.b[i]) == Ir.TEMPORARY) {
+            readers[Ir.bank(ir.b[i])][Ir.index(ir.b[i])] += delta;
+        }
+    }
+
+    // Where control goes from block k when its last jump is taken, or when
+    // it is not; Ir.NONE if it cannot
+    private int successor(int k, boolean taken) {
+        int last = ir.last(k);
+        int op = last == Ir.NONE ? Ir.NOP : ir.op[last];
+        if (taken) {
+            return Ir.jumps(op) ? ir.target[last] : Ir.NONE;
+        }
+        if (op == Bytecode.JUMP || op == Bytecode.HALT || k + 1 == ir.blocks) {
+            return Ir.NONE;
+        }
+        return k + 1;
+    }
+
+    private void unreachable() {
+        boolean[] reached = new boolean[ir.blocks];
+        int[] stack = new int[ir.blocks];
+        int sp = 0;
+        reached[0] = true;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int k = stack[--sp];
+            for (int s = 0; s < 2; s++) {
+                int next = successor(k, s == 0);
+                if (next != Ir.NONE && !reached[next]) {
+                    reached[next] = true;
+                    stack[sp++] = next;
+                }
+            }
+        }
+        for (int k = 0; k < ir.blocks; k++) {
+            if (!reached[k]) {
+                Arrays.fill(ir.op, ir.blockStart[k], ir.blockStart[k + 1], Ir.NOP);
+            }
+        }
+    }
+
+    // A jump, taken or not, to where the block falls through anyway. Done
+    // last block first, as removing a jump may empty its block
+    private int jumpsToNext() {
+        int removed = 0;
+        int next = ir.blocks;
+        for (int k = ir.blocks - 1; k >= 0; k--) {
+            int last = ir.last(k);
+            if (last != Ir.NONE && Ir.jumps(ir.op[last]) && ir.target[last] >= k + 1 && ir.target[last] <= next) {
+                ir.op[last] = Ir.NOP;
+                removed++;
+                last = ir.last(k);
+            }
+            if (last != Ir.NONE) {
+                next = k;
+            }
+        }
+        return removed;
+    }
+
+    // Removes pure stores to variables that are not live after them. A
+    // variable is live at the end of a block if a successor reads it before
+    // writing it, or it is live at that successor's end and not written
+    private int deadStores() {
+        int variables = ir.variables[Ir.INT] + ir.variables[Ir.REAL];
+        int words = (variables + 63) >> 6;
+        long[][] used = new long[ir.blocks][words];
+        long[][] written = new long[ir.blocks][words];
+        long[][] liveIn = new long[ir.blocks][words];
+        long[][] liveOut = new long[ir.blocks][words];
+        for (int k = 0; k < ir.blocks; k++) {
+            for (int i = ir.blockStart[k]; i < ir.blockStart[k + 1]; i++) {
+                int reads = Ir.reads(ir.op[i]);
+                if (reads >= 1) {
+                    use(used[k], written[k], ir.a[i]);
+                }
+                if (reads == 2) {
+                    use(used[k], written[k], ir.b[i]);
+                }
+                if (Ir.defines(ir.op[i]) && Ir.kind(ir.d[i]) == Ir.VARIABLE) {
+                    set(written[k], number(ir.d[i]));
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = ir.blocks - 1; k >= 0; k--) {
+                for (int s = 0; s < 2; s++) {
+                    int next = successor(k, s == 0);
+                    if (next != Ir.NONE) {
+                        for (int w = 0; w < words; w++) {
+                            liveOut[k][w] |= liveIn[next][w];
+                        }
+                    }
+                }
+                for (int w = 0; w < words; w++) {
+                    long in = used[k][w] | liveOut[k][w] & ~written[k][w];
+                    changed |= in != liveIn[k][w];
+                    liveIn[k][w] = in;
+                }
+            }
+        }
+
+        int removed = 0;
+        for (int k = 0; k < ir.blocks; k++) {
+            long[] live = liveOut[k];
+            for (int i = ir.blockStart[k + 1] - 1; i >= ir.blockStart[k]; i--) {
+                int op = ir.op[i];
+                if (Ir.defines(op) && Ir.kind(ir.d[i]) == Ir.VARIABLE) {
+                    int n = number(ir.d[i]);
+                    if (Ir.pure(op) && (live[n >> 6] & 1L << n) == 0) {
+                        ir.op[i] = Ir.NOP;
+                        removed++;
+                        continue;
+                    }
+                    live[n >> 6] &= ~(1L << n);
+                }
+                int reads = Ir.reads(op);
+                if (reads >= 1 && Ir.kind(ir.a[i]) == Ir.VARIABLE) {
+                    set(live, number(ir.a[i]));
+                }
+                if (reads == 2 && Ir.kind(ir.b[i]) == Ir.VARIABLE) {
+                    set(live, number(ir.b[i]));
+                }
+            }
+        }
+        return removed;
+    }
+
+    // A variable read before the block writes it
+    private void use(long[] used, long[] written, int operand) {
+        if (Ir.kind(operand) == Ir.VARIABLE) {
+            int n = number(operand);
+            if ((written[n >> 6] & 1L << n) == 0) {
+                set(used, n);
+            }
+        }
+    }
+
+    private static void set(long[] bits, int n) {
+        bits[n >> 6] |= 1L << n;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package vm;
+
+// A checked program lowered to bytecode (see Bytecode), ready for
+// VirtualMachine. The initial register banks carry the constants in their
+// slots; variables and temporaries start at zero. Immutable once built
+public final class Program {
+
+    final int[] code;
+    final long[] ints;
+    final double[] reals;
+    final String[] texts;
+
+    Program(int[] code, long[] ints, double[] reals, String[] texts) {
+        this.code = code;
+        this.ints = ints;
+        this.reals = reals;
+        this.texts = texts;
+    }
+
+    public int size() {
+        return code.length;
+    }
+
+    // One instruction per line, "offset: name operands"
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + Bytecode.OPERANDS[code[pc]]) {
+            out.append(String.format("%4d: %s", pc, Bytecode.NAMES[code[pc]]));
+            for (int k = 1; k <= Bytecode.OPERANDS[code[pc]]; k++) {
+                out.append(' ').append(code[pc + k]);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,326 @@
+package vm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Io over byte streams, buffered both ways. Input numbers are separated by
+// any whitespace and parsed straight from the input buffer. Output is
+// formatted into a buffer of its own, written out when it is full, when
+// the program waits for more input (so a prompt shows first) and at the end
+public class StreamIo implements Io {
+
+    private static final int BUFFER = 1 << 16;
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "verdadeiro".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "falso".getBytes(StandardCharsets.US_ASCII);
+
+    // The powers of ten a double holds exactly
+    private static final double[] POWERS = new double[23];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final InputStream in;
+    private final OutputStream out;
+
+    // input[position..limit) is still to be read; next() leaves the token
+    // in input[start..position)
+    private final byte[] input = new byte[BUFFER];
+    private int position;
+    private int limit;
+    private int start;
+
+    private final byte[] output = new byte[BUFFER];
+    private int length;
+
+    public StreamIo(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    private void next() {
+        while (true) {
+            while (position < limit && blank(input[position])) {
+                position++;
+            }
+            if (position < limit) {
+                break;
+            }
+            position = 0;
+            if (!fill(0)) {
+                throw new VmError("Fim da entrada");
+            }
+        }
+        start = position;
+        while (true) {
+            while (position < limit && !blank(input[position])) {
+                position++;
+            }
+            // A token cut by the end of the buffer goes to its start, and
+            // one as big as the buffer is taken as it is
+            if (position < limit || start == 0 && limit == input.length) {
+                return;
+            }
+            int read = position - start;
+            System.arraycopy(input, start, input, 0, read);
+            start = 0;
+            position = read;
+            if (!fill(read)) {
+                return;
+            }
+        }
+    }
+
+    // Reads more input into the buffer after its first from bytes; false
+    // at the end of the input
+    private boolean fill(int from) {
+        drain();
+        try {
+            out.flush();
+            int read = in.read(input, from, input.length - from);
+            if (read <= 0) {
+                limit = from;
+                return false;
+            }
+            limit = from + read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The separators of StringTokenizer
+    private static boolean blank(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private String token() {
+        return new String(input, start, position - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long readInt() {
+        next();
+        int i = start;
+        boolean negative = input[i] == '-';
+        if (negative || input[i] == '+') {
+            i++;
+        }
+        if (i == position) {
+            throw new VmError("Inteiro inválido na entrada: " + token());
+        }
+        // Negative while it is read, as -Long.MIN_VALUE does not fit
+        long value = 0;
+        for (; i < position; i++) {
+            int digit = input[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return parseInt();
+            }
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit) {
+                throw new VmError("Inteiro inválido na entrada: " + token());
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new VmError("Inteiro inválido na entrada: " + token());
+        }
+        return negative ? value : -value;
+    }
+
+    // Whatever else Long.parseLong takes, such as digits of other scripts
+    private long parseInt() {
+        String token = token();
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new VmError("Inteiro inválido na entrada: " + token);
+        }
+    }
+
+    @Override
+    public double readReal() {
+        next();
+        // Up to 15 digits with a decimal point: the digits and the power of
+        // ten are exact doubles, and one division rounds the quotient as
+        // Double.parseDouble rounds the number
+        int i = start;
+        boolean negative = input[i] == '-';
+        if (negative || input[i] == '+') {
+            i++;
+        }
+        long digits = 0;
+        int count = 0;
+        int decimals = -1;
+        for (; i < position; i++) {
+            byte b = input[i];
+            if (b >= '0' && b <= '9' && count < 15) {
+                digits = digits * 10 + (b - '0');
+                count++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parseReal();
+            }
+        }
+        if (count == 0) {
+            return parseReal();
+        }
+        double value = decimals > 0 ? digits / POWERS[decimals] : digits;
+        return negative ? -value : value;
+    }
+
+    private double parseReal() {
+        String token = token();
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new VmError("Real inválido na entrada: " + token);
+        }
+    }
+
+    @Override
+    public void writeInt(long value) {
+        room(20 + NEWLINE.length);
+        integer(value);
+        newline();
+    }
+
+    @Override
+    public void writeReal(double value) {
+        // Double.toString writes whole numbers below 10^7 as digits and
+        // ".0"; anything else takes its own digits
+        if (value == (long) value && Math.abs(value) < 1e7) {
+            room(12 + NEWLINE.length);
+            if (Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+                output[length++] = '-';
+            }
+            integer((long) value);
+            output[length++] = '.';
+            output[length++] = '0';
+            newline();
+        } else {
+            writeText(Double.toString(value));
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        byte[] text = value ? TRUE : FALSE;
+        room(text.length + NEWLINE.length);
+        System.arraycopy(text, 0, output, length, text.length);
+        length += text.length;
+        newline();
+    }
+
+    @Override
+    public void writeText(String text) {
+        int size = text.length();
+        for (int i = 0; i < size; i++) {
+            if (text.charAt(i) >= 0x80) {
+                bytes(text.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        if (size + NEWLINE.length > output.length) {
+            bytes(text.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        room(size + NEWLINE.length);
+        for (int i = 0; i < size; i++) {
+            output[length++] = (byte) text.charAt(i);
+        }
+        newline();
+    }
+
+    @Override
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A line too long for the buffer goes out on its own
+    private void bytes(byte[] text) {
+        if (text.length + NEWLINE.length > output.length) {
+            drain();
+            try {
+                out.write(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            room(text.length + NEWLINE.length);
+            System.arraycopy(text, 0, output, length, text.length);
+            length += text.length;
+        }
+        room(NEWLINE.length);
+        newline();
+    }
+
+    // The digits of value, with its sign
+    private void integer(long value) {
+        if (value == Long.MIN_VALUE) {
+            byte[] text = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, output, length, text.length);
+            length += text.length;
+            return;
+        }
+        if (value < 0) {
+            output[length++] = '-';
+            value = -value;
+        }
+        int end = length + digits(value);
+        length = end;
+        do {
+            output[--end] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private static int digits(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void newline() {
+        for (byte b : NEWLINE) {
+            output[length++] = b;
+        }
+    }
+
+    // Makes room for bytes more output
+    private void room(int bytes) {
+        if (length + bytes > output.length) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        if (length == 0) {
+            return;
+        }
+        try {
+            out.write(output, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+}
\ No newline at end of file
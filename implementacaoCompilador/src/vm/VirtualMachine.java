@@ -0,0 +1,207 @@
+package vm;
+
+// Runs a Program. The registers are two flat arrays, a copy of the
+// program's initial banks, and the loop dispatches on one opcode per
+// instruction with its operands read inline from the code, so no value is
+// boxed and nothing is allocated while it runs
+public final class VirtualMachine {
+
+    private VirtualMachine() {
+    }
+
+    public static void run(Program program, Io io) {
+        int[] code = program.code;
+        long[] i = program.ints.clone();
+        double[] r = program.reals.clone();
+        int pc = 0;
+        try {
+            while (true) {
+                switch (code[pc]) {
+                    case Bytecode.HALT:
+                        return;
+                    case Bytecode.JUMP:
+                        pc = code[pc + 1];
+                        break;
+                    case Bytecode.JZ:
+                        pc = i[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+                        break;
+                    case Bytecode.JNZ:
+                        pc = i[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                        break;
+                    case Bytecode.MOV_I:
+                        i[code[pc + 1]] = i[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.MOV_R:
+                        r[code[pc + 1]] = r[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.I2R:
+                        r[code[pc + 1]] = i[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.ADD_I:
+                        i[code[pc + 1]] = i[code[pc + 2]] + i[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.SUB_I:
+                        i[code[pc + 1]] = i[code[pc + 2]] - i[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.MUL_I:
+                        i[code[pc + 1]] = i[code[pc + 2]] * i[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.NEG_I:
+                        i[code[pc + 1]] = -i[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.ADD_R:
+                        r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.SUB_R:
+                        r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.MUL_R:
+                        r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.DIV_R:
+                        r[code[pc + 1]] = r[code[pc + 2]] / r[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.NEG_R:
+                        r[code[pc + 1]] = -r[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.NOT:
+                        i[code[pc + 1]] = 1 - i[code[pc + 2]];
+                        pc += 3;
+                        break;
+                    case Bytecode.AND:
+                        i[code[pc + 1]] = i[code[pc + 2]] & i[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.OR:
+                        i[code[pc + 1]] = i[code[pc + 2]] | i[code[pc + 3]];
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.EQ:
+                        i[code[pc + 1]] = i[code[pc + 2]] == i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.NE:
+                        i[code[pc + 1]] = i[code[pc + 2]] != i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.LT:
+                        i[code[pc + 1]] = i[code[pc + 2]] < i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.GT:
+                        i[code[pc + 1]] = i[code[pc + 2]] > i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.LE:
+                        i[code[pc + 1]] = i[code[pc + 2]] <= i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_I + Bytecode.GE:
+                        i[code[pc + 1]] = i[code[pc + 2]] >= i[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.EQ:
+                        i[code[pc + 1]] = r[code[pc + 2]] == r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.NE:
+                        i[code[pc + 1]] = r[code[pc + 2]] != r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.LT:
+                        i[code[pc + 1]] = r[code[pc + 2]] < r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.GT:
+                        i[code[pc + 1]] = r[code[pc + 2]] > r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.LE:
+                        i[code[pc + 1]] = r[code[pc + 2]] <= r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.CMP_R + Bytecode.GE:
+                        i[code[pc + 1]] = r[code[pc + 2]] >= r[code[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.EQ:
+                        pc = i[code[pc + 1]] == i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.NE:
+                        pc = i[code[pc + 1]] != i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.LT:
+                        pc = i[code[pc + 1]] < i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.GT:
+                        pc = i[code[pc + 1]] > i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.LE:
+                        pc = i[code[pc + 1]] <= i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_I + Bytecode.GE:
+                        pc = i[code[pc + 1]] >= i[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.EQ:
+                        pc = r[code[pc + 1]] == r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.NE:
+                        pc = r[code[pc + 1]] != r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.LT:
+                        pc = r[code[pc + 1]] < r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.GT:
+                        pc = r[code[pc + 1]] > r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.LE:
+                        pc = r[code[pc + 1]] <= r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.JNOT_R + Bytecode.GE:
+                        pc = r[code[pc + 1]] >= r[code[pc + 2]] ? pc + 4 : code[pc + 3];
+                        break;
+                    case Bytecode.READ_I:
+                        i[code[pc + 1]] = io.readInt();
+                        pc += 2;
+                        break;
+                    case Bytecode.READ_R:
+                        r[code[pc + 1]] = io.readReal();
+                        pc += 2;
+                        break;
+                    case Bytecode.WRITE_I:
+                        io.writeInt(i[code[pc + 1]]);
+                        pc += 2;
+                        break;
+                    case Bytecode.WRITE_R:
+                        io.writeReal(r[code[pc + 1]]);
+                        pc += 2;
+                        break;
+                    case Bytecode.WRITE_B:
+                        io.writeBoolean(i[code[pc + 1]] != 0);
+                        pc += 2;
+                        break;
+                    case Bytecode.WRITE_T:
+                        io.writeText(program.texts[code[pc + 1]]);
+                        pc += 2;
+                        break;
+                    default:
+                        throw new IllegalStateException("Instrução inválida " + code[pc] + " em " + pc);
+                }
+            }
+        } finally {
+            io.flush();
+        }
+    }
+}
\ No newline at end of file
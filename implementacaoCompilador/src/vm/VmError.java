@@ -0,0 +1,11 @@
+package vm;
+
+// A program that cannot go on: bad or missing input, or a constant the VM
+// cannot hold
+public class VmError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public VmError(String msg) {
+        super(msg);
+    }
+}
\ No newline at end of file